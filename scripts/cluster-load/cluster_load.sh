@@ -0,0 +1,16 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml clean package;
+
+java -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.ClusterLoad \
+    --instances 1,2,4,8 \
+    --jvmOptions "-Xms256m -Xmx256m" \
+    --runtime 300 \
+    --reportInterval 10 \
+    --javaThreads 2 \
+    --type id \
+    --version 13 \
+    --memoryCost 65536 \
+    --timeCost 2 \
+    --parallelism 1 \
+    | tee cluster_load.out
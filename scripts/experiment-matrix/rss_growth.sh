@@ -0,0 +1,8 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml clean package;
+
+java -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.ExperimentMatrix \
+    --matrix rss_growth.properties \
+    --outputDir rss_growth \
+    | tee rss_growth.out
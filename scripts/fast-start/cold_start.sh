@@ -0,0 +1,9 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml -Pappcds clean package;
+
+java -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.ColdStartBenchmark \
+    --jar ../../target/jargon2-examples-1.1.1.jar \
+    --runs 50 \
+    --cliArgs "somesalt -e -id -t 1 -m 10 -p 1" \
+    | tee cold_start.out
@@ -0,0 +1,16 @@
+#!/usr/bin/env bash
+#
+# Runs the command line utility with the AppCDS archive created by "mvn -Pappcds package" (JDK 13+).
+# Class loading comes from the archive and only C1 is used, which is all a single hash needs.
+#
+# Usage: echo -n "password" | ./jargon2.sh somesalt -t 2 -m 16 -p 4 -l 24
+
+DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+JAR="${JARGON2_JAR:-$DIR/../../target/jargon2-examples-1.1.1.jar}"
+JSA="${JARGON2_JSA:-${JAR%.jar}.jsa}"
+
+if [ -f "$JSA" ]; then
+    exec java -XX:SharedArchiveFile="$JSA" -Xshare:auto -XX:TieredStopAtLevel=1 -jar "$JAR" "$@"
+else
+    exec java -XX:TieredStopAtLevel=1 -jar "$JAR" "$@"
+fi
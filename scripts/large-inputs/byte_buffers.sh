@@ -0,0 +1,14 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml clean package;
+
+java -Xms1024m -Xmx1024m -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.ByteBufferBenchmark \
+    --sizes 1,16,256,1024,4096,16384,65536 \
+    --operations 20 \
+    --rounds 3 \
+    --type id \
+    --version 13 \
+    --memoryCost 8 \
+    --timeCost 1 \
+    --parallelism 1 \
+    | tee byte_buffers.out
@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml clean package;
+
+for scheduler in priority fifo; do
+    java -Xms256m -Xmx256m -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.MultiThreadedHashVerifyLoop \
+        --loginFlood \
+        --scheduler $scheduler \
+        --runtime 300 \
+        --floodStart 60 \
+        --javaThreads 4 \
+        --reservedVerify 1 \
+        --loginRate 20 \
+        --floodRate 500 \
+        --deadline 250 \
+        --type id \
+        --version 13 \
+        --memoryCost 65536 \
+        --timeCost 2 \
+        --parallelism 1 \
+        | tee login_flood_$scheduler.out
+done
@@ -0,0 +1,10 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml clean package;
+
+java -Xms256m -Xmx256m -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.MixedWorkload \
+    --workload tenants.properties \
+    --runtime 300 \
+    --soloRuntime 120 \
+    --javaThreads 4 \
+    | tee tenants.out
@@ -0,0 +1,21 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml clean package;
+
+for mode in off inline async; do
+    java -Xms512m -Xmx512m -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.RehashOnLoginLoad \
+        --rehashMode $mode \
+        --runtime 300 \
+        --users 10000 \
+        --loginRate 20 \
+        --javaThreads 4 \
+        --rehashWorkers 1 \
+        --rehashQueue 100 \
+        --type id \
+        --version 13 \
+        --oldMemoryCost 16384 \
+        --memoryCost 65536 \
+        --timeCost 2 \
+        --parallelism 1 \
+        | tee rehash_on_login_$mode.out
+done
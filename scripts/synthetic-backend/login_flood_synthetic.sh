@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+
+mvn -f ../../pom.xml clean package;
+
+for scheduler in priority fifo; do
+    java -Xms256m -Xmx256m \
+        -Djargon2.synthetic.mode=sleep \
+        -Djargon2.synthetic.nanosPerKbPass=1000 \
+        -Djargon2.synthetic.spikeProbability=0.001 \
+        -Djargon2.synthetic.spikeMultiplier=10 \
+        -Djargon2.synthetic.seed=42 \
+        -cp ../../target/jargon2-examples-1.1.1.jar com.kosprov.jargon2.examples.MultiThreadedHashVerifyLoop \
+        --backend com.kosprov.jargon2.examples.SyntheticBackend \
+        --loginFlood \
+        --scheduler $scheduler \
+        --runtime 120 \
+        --floodStart 30 \
+        --javaThreads 256 \
+        --reservedVerify 32 \
+        --loginRate 1000 \
+        --floodRate 5000 \
+        --deadline 250 \
+        --memoryCost 65536 \
+        --timeCost 2 \
+        --parallelism 1 \
+        | tee login_flood_synthetic_$scheduler.out
+done
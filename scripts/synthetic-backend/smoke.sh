@@ -0,0 +1,34 @@
+#!/usr/bin/env bash
+
+# Short runs that hash and verify through jargon2Hasher() / jargon2Verifier() on the synthetic backend. Each harness
+# exits with an error if any verification fails or doesn't match, so this fails fast if the backend breaks.
+
+set -e -o pipefail
+
+mvn -f ../../pom.xml clean package;
+
+JAVA="java -Xms256m -Xmx256m -Djargon2.synthetic.mode=sleep -Djargon2.synthetic.nanosPerKbPass=100 -cp ../../target/jargon2-examples-1.1.1.jar"
+BACKEND=com.kosprov.jargon2.examples.SyntheticBackend
+
+timeout 60 $JAVA com.kosprov.jargon2.examples.MultiThreadedHashVerifyLoop \
+    --backend $BACKEND \
+    --loginFlood \
+    --runtime 10 \
+    --floodStart 5 \
+    --javaThreads 8 \
+    --loginRate 50 \
+    --floodRate 100 \
+    --memoryCost 1024 \
+    --timeCost 1 \
+    | tee smoke_login_flood.out
+
+timeout 60 $JAVA com.kosprov.jargon2.examples.RehashOnLoginLoad \
+    --backend $BACKEND \
+    --runtime 10 \
+    --users 100 \
+    --loginRate 20 \
+    --oldMemoryCost 1024 \
+    --memoryCost 4096 \
+    | tee smoke_rehash_on_login.out
+
+echo "Smoke test passed"
@@ -0,0 +1,246 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.spi.Jargon2Backend;
+import org.apache.commons.cli.*;
+
+import java.util.*;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Measures the per-operation cost of hashing / verifying through batches of different sizes.
+ *
+ * <p>
+ *     For reference, it first measures one call per operation through the {@link Hasher} / {@link Verifier} API and
+ *     directly on the backend. Then, if the backend implements {@link BatchJargon2Backend}, it measures batch calls
+ *     for every batch size. With small memory costs, the difference is the per-call overhead that the backend
+ *     amortizes. Batch rows are skipped for other backends, as the looping fallback makes the same calls as the direct
+ *     rows. In this project, only {@link SyntheticBackend} batches (it charges its fixed latency once per batch).
+ * </p>
+ */
+public class BatchBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        Class<? extends Jargon2Backend> backendClass = null; // discovered
+        int[] batchSizes = { 1, 2, 4, 8, 16, 32, 64, 128 };
+        int operations = 10000;
+        int rounds = 5;
+        int saltLength = 16;
+        int passwordLength = 32;
+        int hashLength = 16;
+        Type type = Type.ARGON2id;
+        Version version = Version.V13;
+        int memoryCost = 8;
+        int timeCost = 1;
+        int parallelism = 1;
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("b").longOpt("backend").hasArg(true).argName("class").desc("Class name of the Argon2 backend (default: automatic)").build());
+            options.addOption(Option.builder("bs").longOpt("batchSizes").hasArg(true).argName("N,N,...").desc("Batch sizes to measure (default: " + Arrays.toString(batchSizes).replaceAll("[\\[\\] ]", "") + ")").build());
+            options.addOption(Option.builder("o").longOpt("operations").hasArg(true).argName("N").desc("Number of operations per round (default: " + operations + ")").build());
+            options.addOption(Option.builder("r").longOpt("rounds").hasArg(true).argName("N").desc("Number of rounds per measurement, the best one is reported (default: " + rounds + ")").build());
+            options.addOption(Option.builder("sl").longOpt("saltLength").hasArg(true).argName("N").desc("Number of salt bytes (default: " + saltLength + ")").build());
+            options.addOption(Option.builder("pl").longOpt("passwordLength").hasArg(true).argName("N").desc("Number of password bytes (default: " + passwordLength + ")").build());
+            options.addOption(Option.builder("hl").longOpt("hashLength").hasArg(true).argName("N").desc("Number of output hash bytes (default: " + hashLength + ")").build());
+            options.addOption(Option.builder("t").longOpt("type").hasArg(true).argName("i|d|id").desc("Argon2 type (default: " + type.getValue().replace("argon2", "") + ")").build());
+            options.addOption(Option.builder("v").longOpt("version").hasArg(true).argName("10|13").desc("Argon2 version (default: " + version.name().replace("V", "") + ")").build());
+            options.addOption(Option.builder("mc").longOpt("memoryCost").hasArg(true).argName("N").desc("Number of KB of memory used for hash calculation (default: " + memoryCost + ")").build());
+            options.addOption(Option.builder("tc").longOpt("timeCost").hasArg(true).argName("N").desc("Number of passes through memory during hash calculation (default: " + timeCost + ")").build());
+            options.addOption(Option.builder("p").longOpt("parallelism").hasArg(true).argName("N").desc("Number of lanes/threads used for hash calculation (default: " + parallelism + ")").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h")) {
+                System.out.println("Measures the per-operation cost of hashing / verifying through batches of different sizes.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -cp path_to_jar " + BatchBenchmark.class.getName() + " [options]", options);
+                System.exit(0);
+            }
+
+            if (cmd.hasOption("b")) {
+                backendClass = Class.forName(cmd.getOptionValue("b")).asSubclass(Jargon2Backend.class);
+            }
+
+            if (cmd.hasOption("bs")) {
+                batchSizes = Arrays.stream(cmd.getOptionValue("bs").split(",")).mapToInt(val -> Integer.parseInt(val.trim())).toArray();
+            }
+
+            if (cmd.hasOption("o")) {
+                operations = Integer.parseInt(cmd.getOptionValue("o"));
+            }
+
+            if (cmd.hasOption("r")) {
+                rounds = Integer.parseInt(cmd.getOptionValue("r"));
+            }
+
+            if (cmd.hasOption("sl")) {
+                saltLength = Integer.parseInt(cmd.getOptionValue("sl"));
+            }
+
+            if (cmd.hasOption("pl")) {
+                passwordLength = Integer.parseInt(cmd.getOptionValue("pl"));
+            }
+
+            if (cmd.hasOption("hl")) {
+                hashLength = Integer.parseInt(cmd.getOptionValue("hl"));
+            }
+
+            if (cmd.hasOption("t")) {
+                String val = cmd.getOptionValue("t");
+                if ("i".equals(val)) {
+                    type = Type.ARGON2i;
+                } else if ("d".equals(val)) {
+                    type = Type.ARGON2d;
+                } else if (!"id".equals(val)) {
+                    throw new IllegalArgumentException("wrong type " + val);
+                }
+            }
+
+            if (cmd.hasOption("v")) {
+                String val = cmd.getOptionValue("v");
+                if ("10".equals(val)) {
+                    version = Version.V10;
+                } else if (!"13".equals(val)) {
+                    throw new IllegalArgumentException("wrong version " + val);
+                }
+            }
+
+            if (cmd.hasOption("mc")) {
+                memoryCost = Integer.parseInt(cmd.getOptionValue("mc"));
+            }
+
+            if (cmd.hasOption("tc")) {
+                timeCost = Integer.parseInt(cmd.getOptionValue("tc"));
+            }
+
+            if (cmd.hasOption("p")) {
+                parallelism = Integer.parseInt(cmd.getOptionValue("p"));
+            }
+        }
+        //</editor-fold>
+
+        Jargon2Backend backend = (backendClass != null ? newBackend(backendClass) : discoverBackend());
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Configuration");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Backend:\t\t%s\n", backend.getClass().getName());
+        System.out.printf("Batch support:\t\t%s\n", (backend instanceof BatchJargon2Backend ? "yes" : "no (batch rows skipped)"));
+        System.out.printf("Batch sizes:\t\t%s\n", Arrays.toString(batchSizes));
+        System.out.printf("Operations:\t\t%d per round\n", operations);
+        System.out.printf("Rounds:\t\t\t%d (best reported)\n", rounds);
+        System.out.printf("Salt length:\t\t%d bytes\n", saltLength);
+        System.out.printf("Password length:\t%d bytes\n", passwordLength);
+        System.out.printf("Hash length:\t\t%d bytes\n", hashLength);
+        System.out.printf("Type:\t\t\t%s\n", type.getValueCapitalized());
+        System.out.printf("Version:\t\t%s\n", version.name().toLowerCase());
+        System.out.printf("Memory cost:\t\t%d KB\n", memoryCost);
+        System.out.printf("Time cost:\t\t%d passes\n", timeCost);
+        System.out.printf("Parallelism:\t\t%d lanes/threads\n", parallelism);
+        System.out.println("--------------------------------------------------");
+
+        Random r = new Random();
+        int maxBatchSize = Arrays.stream(batchSizes).max().orElse(1);
+
+        byte[][] salts = new byte[maxBatchSize][];
+        byte[][] passwords = new byte[maxBatchSize][];
+        String[] hashes = new String[maxBatchSize];
+        for (int i = 0; i < maxBatchSize; i++) {
+            salts[i] = new byte[saltLength];
+            passwords[i] = new byte[passwordLength];
+            r.nextBytes(salts[i]);
+            r.nextBytes(passwords[i]);
+            hashes[i] = backend.encodedHash(type, version, memoryCost, timeCost, parallelism, parallelism, hashLength, null, null, salts[i], passwords[i], null);
+        }
+
+        Hasher hasher = jargon2Hasher().backend(backend).type(type).version(version).memoryCost(memoryCost).timeCost(timeCost).parallelism(parallelism).hashLength(hashLength);
+        Verifier verifier = jargon2Verifier().backend(backend);
+
+        final Type t = type;
+        final Version v = version;
+        final int mc = memoryCost;
+        final int tc = timeCost;
+        final int p = parallelism;
+        final int hl = hashLength;
+
+        System.out.printf("%-20s %14s %14s %10s %10s%n", "Calls", "hash (ns/op)", "verify (ns/op)", "hash x", "verify x");
+
+        double apiHash = measure(rounds, operations, 1, i -> hasher.salt(salts[0]).password(passwords[0]).encodedHash());
+        double apiVerify = measure(rounds, operations, 1, i -> verifier.hash(hashes[0]).password(passwords[0]).verifyEncoded());
+        printRow("Hasher / Verifier", apiHash, apiVerify, apiHash, apiVerify);
+
+        double directHash = measure(rounds, operations, 1, i -> backend.encodedHash(t, v, mc, tc, p, p, hl, null, null, salts[0], passwords[0], null));
+        double directVerify = measure(rounds, operations, 1, i -> backend.verifyEncoded(hashes[0], p, null, null, passwords[0], null));
+        printRow("Backend", directHash, directVerify, apiHash, apiVerify);
+
+        if (!(backend instanceof BatchJargon2Backend)) {
+            return; // batches would loop over the same calls as the direct rows
+        }
+        BatchJargon2Backend batchBackend = (BatchJargon2Backend) backend;
+
+        for (int batchSize : batchSizes) {
+            byte[][] batchSalts = Arrays.copyOf(salts, batchSize);
+            byte[][] batchPasswords = Arrays.copyOf(passwords, batchSize);
+            String[] batchHashes = Arrays.copyOf(hashes, batchSize);
+
+            double batchHash = measure(rounds, operations, batchSize, i -> batchBackend.encodedHashBatch(t, v, mc, tc, p, p, hl, null, null, batchSalts, batchPasswords, null));
+            double batchVerify = measure(rounds, operations, batchSize, i -> batchBackend.verifyEncodedBatch(batchHashes, p, null, null, batchPasswords, null));
+            printRow("Batch of " + batchSize, batchHash, batchVerify, apiHash, apiVerify);
+        }
+    }
+
+    @FunctionalInterface
+    interface Call {
+        Object call(int i) throws Exception;
+    }
+
+    /**
+     * @return nanoseconds per operation of the best round (after one untimed round)
+     */
+    private static double measure(int rounds, int operations, int batchSize, Call call) throws Exception {
+        int calls = Math.max(1, operations / batchSize);
+        Object sink = null;
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round <= rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                sink = call.call(i);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round > 0) {
+                best = Math.min(best, (double) elapsed / (calls * batchSize));
+            }
+        }
+        if (sink == null) {
+            throw new IllegalStateException("No result");
+        }
+        return best;
+    }
+
+    private static void printRow(String name, double hash, double verify, double apiHash, double apiVerify) {
+        System.out.printf("%-20s %14.0f %14.0f %10.2f %10.2f%n", name, hash, verify, apiHash / hash, apiVerify / verify);
+    }
+
+    private static Jargon2Backend newBackend(Class<? extends Jargon2Backend> backendClass) {
+        try {
+            return backendClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Could not instantiate backend " + backendClass.getName(), e);
+        }
+    }
+
+    private static Jargon2Backend discoverBackend() {
+        Iterator<Jargon2Backend> backends = ServiceLoader.load(Jargon2Backend.class).iterator();
+        if (!backends.hasNext()) {
+            throw new IllegalStateException("No Jargon2 backend found, use --backend");
+        }
+        return backends.next();
+    }
+}
@@ -0,0 +1,103 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.api.Jargon2Exception;
+import com.kosprov.jargon2.spi.Jargon2Backend;
+
+import java.util.Map;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * A {@link Jargon2Backend} that can hash or verify several inputs sharing the same parameters in one call.
+ *
+ * <p>
+ *     An extension point of the SPI: the default methods only check that the inputs have the same number of elements
+ *     and loop over the single-input methods, so they cost the same as single calls. A backend overrides them to
+ *     amortize its per-call cost (parameter validation, allocation, the transition to native code), which dominates at
+ *     small memory costs. {@link SyntheticBackend} does, to simulate such a backend.
+ * </p>
+ *
+ * <p>
+ *     Use {@link #of(Jargon2Backend)} to batch over any backend: backends that don't implement this interface are
+ *     wrapped and fall back to looping.
+ * </p>
+ */
+public interface BatchJargon2Backend extends Jargon2Backend {
+
+    /**
+     * Like {@link #encodedHash}, with the i-th hash computed from the i-th ad, salt and password.
+     *
+     * @param ads associated data per input, or <tt>null</tt> for no associated data at all
+     */
+    default String[] encodedHashBatch(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[][] ads, byte[][] salts, byte[][] passwords, Map<String, Object> options) throws Jargon2Exception {
+        checkBatch(salts.length, ads, passwords);
+        String[] hashes = new String[salts.length];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = encodedHash(type, version, memoryCost, timeCost, lanes, threads, hashLength, secret, (ads != null ? ads[i] : null), salts[i], passwords[i], options);
+        }
+        return hashes;
+    }
+
+    /**
+     * Like {@link #verifyEncoded}, with the i-th hash verified against the i-th ad and password.
+     *
+     * @param ads associated data per input, or <tt>null</tt> for no associated data at all
+     */
+    default boolean[] verifyEncodedBatch(String[] encodedHashes, int threads, byte[] secret, byte[][] ads, byte[][] passwords, Map<String, Object> options) throws Jargon2Exception {
+        checkBatch(encodedHashes.length, ads, passwords);
+        boolean[] matches = new boolean[encodedHashes.length];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = verifyEncoded(encodedHashes[i], threads, secret, (ads != null ? ads[i] : null), passwords[i], options);
+        }
+        return matches;
+    }
+
+    static void checkBatch(int size, byte[][] ads, byte[][] passwords) {
+        if (passwords.length != size || (ads != null && ads.length != size)) {
+            throw new Jargon2Exception("All inputs of a batch must have the same number of elements");
+        }
+    }
+
+    /**
+     * @return the backend itself if it supports batches, otherwise a wrapper that loops over its single-input methods
+     */
+    static BatchJargon2Backend of(Jargon2Backend backend) {
+        if (backend instanceof BatchJargon2Backend) {
+            return (BatchJargon2Backend) backend;
+        }
+        return new Looping(backend);
+    }
+
+    final class Looping implements BatchJargon2Backend {
+        private final Jargon2Backend backend;
+
+        private Looping(Jargon2Backend backend) {
+            this.backend = backend;
+        }
+
+        @Override
+        public byte[] rawHash(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.rawHash(type, version, memoryCost, timeCost, lanes, threads, hashLength, secret, ad, salt, password, options);
+        }
+
+        @Override
+        public String encodedHash(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.encodedHash(type, version, memoryCost, timeCost, lanes, threads, hashLength, secret, ad, salt, password, options);
+        }
+
+        @Override
+        public boolean verifyRaw(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, byte[] rawHash, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.verifyRaw(type, version, memoryCost, timeCost, lanes, threads, rawHash, secret, ad, salt, password, options);
+        }
+
+        @Override
+        public boolean verifyEncoded(String encodedHash, int threads, byte[] secret, byte[] ad, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.verifyEncoded(encodedHash, threads, secret, ad, password, options);
+        }
+
+        @Override
+        public String toString() {
+            return backend.getClass().getName() + " (looping)";
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.spi.Jargon2Backend;
+import org.apache.commons.cli.*;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Measures latency and heap allocation (i.e. copies) of hashing with large associated data, passed in different ways.
+ *
+ * <p>
+ *     For every size, the same random document is passed as a <tt>byte[]</tt> through the {@link Hasher} API (already
+ *     in memory, read from a file, or streamed through {@code toByteArray(InputStream)}) and as a heap, direct or
+ *     <tt>FileChannel.map</tt>-ed {@link ByteBuffer} through {@link ByteBufferJargon2Backend}. Heap allocation per
+ *     operation is measured for the calling thread, so a value close to the document size means one heap copy. Use a
+ *     small memory cost, so that input handling isn't hidden behind the Argon2 computation. Unless the backend
+ *     implements {@link ByteBufferJargon2Backend} itself (none in this project does), direct and mapped buffers are
+ *     copied once by the fallback, which is what their rows measure.
+ * </p>
+ */
+public class ByteBufferBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        Class<? extends Jargon2Backend> backendClass = null; // discovered
+        int[] sizes = { 1, 64, 1024, 8 * 1024, 32 * 1024 };
+        int operations = 20;
+        int rounds = 3;
+        int saltLength = 16;
+        int passwordLength = 32;
+        int hashLength = 16;
+        Type type = Type.ARGON2id;
+        Version version = Version.V13;
+        int memoryCost = 8;
+        int timeCost = 1;
+        int parallelism = 1;
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("b").longOpt("backend").hasArg(true).argName("class").desc("Class name of the Argon2 backend (default: automatic)").build());
+            options.addOption(Option.builder("s").longOpt("sizes").hasArg(true).argName("N,N,...").desc("Sizes of the associated data in KB (default: " + Arrays.toString(sizes).replaceAll("[\\[\\] ]", "") + ")").build());
+            options.addOption(Option.builder("o").longOpt("operations").hasArg(true).argName("N").desc("Number of operations per round (default: " + operations + ")").build());
+            options.addOption(Option.builder("r").longOpt("rounds").hasArg(true).argName("N").desc("Number of rounds per measurement, the best one is reported (default: " + rounds + ")").build());
+            options.addOption(Option.builder("sl").longOpt("saltLength").hasArg(true).argName("N").desc("Number of salt bytes (default: " + saltLength + ")").build());
+            options.addOption(Option.builder("pl").longOpt("passwordLength").hasArg(true).argName("N").desc("Number of password bytes (default: " + passwordLength + ")").build());
+            options.addOption(Option.builder("hl").longOpt("hashLength").hasArg(true).argName("N").desc("Number of output hash bytes (default: " + hashLength + ")").build());
+            options.addOption(Option.builder("t").longOpt("type").hasArg(true).argName("i|d|id").desc("Argon2 type (default: " + type.getValue().replace("argon2", "") + ")").build());
+            options.addOption(Option.builder("v").longOpt("version").hasArg(true).argName("10|13").desc("Argon2 version (default: " + version.name().replace("V", "") + ")").build());
+            options.addOption(Option.builder("mc").longOpt("memoryCost").hasArg(true).argName("N").desc("Number of KB of memory used for hash calculation (default: " + memoryCost + ")").build());
+            options.addOption(Option.builder("tc").longOpt("timeCost").hasArg(true).argName("N").desc("Number of passes through memory during hash calculation (default: " + timeCost + ")").build());
+            options.addOption(Option.builder("p").longOpt("parallelism").hasArg(true).argName("N").desc("Number of lanes/threads used for hash calculation (default: " + parallelism + ")").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h")) {
+                System.out.println("Measures latency and heap allocation of hashing with large associated data, passed in different ways.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -cp path_to_jar " + ByteBufferBenchmark.class.getName() + " [options]", options);
+                System.exit(0);
+            }
+
+            if (cmd.hasOption("b")) {
+                backendClass = Class.forName(cmd.getOptionValue("b")).asSubclass(Jargon2Backend.class);
+            }
+
+            if (cmd.hasOption("s")) {
+                sizes = Arrays.stream(cmd.getOptionValue("s").split(",")).mapToInt(val -> Integer.parseInt(val.trim())).toArray();
+            }
+
+            if (cmd.hasOption("o")) {
+                operations = Integer.parseInt(cmd.getOptionValue("o"));
+            }
+
+            if (cmd.hasOption("r")) {
+                rounds = Integer.parseInt(cmd.getOptionValue("r"));
+            }
+
+            if (cmd.hasOption("sl")) {
+                saltLength = Integer.parseInt(cmd.getOptionValue("sl"));
+            }
+
+            if (cmd.hasOption("pl")) {
+                passwordLength = Integer.parseInt(cmd.getOptionValue("pl"));
+            }
+
+            if (cmd.hasOption("hl")) {
+                hashLength = Integer.parseInt(cmd.getOptionValue("hl"));
+            }
+
+            if (cmd.hasOption("t")) {
+                String val = cmd.getOptionValue("t");
+                if ("i".equals(val)) {
+                    type = Type.ARGON2i;
+                } else if ("d".equals(val)) {
+                    type = Type.ARGON2d;
+                } else if (!"id".equals(val)) {
+                    throw new IllegalArgumentException("wrong type " + val);
+                }
+            }
+
+            if (cmd.hasOption("v")) {
+                String val = cmd.getOptionValue("v");
+                if ("10".equals(val)) {
+                    version = Version.V10;
+                } else if (!"13".equals(val)) {
+                    throw new IllegalArgumentException("wrong version " + val);
+                }
+            }
+
+            if (cmd.hasOption("mc")) {
+                memoryCost = Integer.parseInt(cmd.getOptionValue("mc"));
+            }
+
+            if (cmd.hasOption("tc")) {
+                timeCost = Integer.parseInt(cmd.getOptionValue("tc"));
+            }
+
+            if (cmd.hasOption("p")) {
+                parallelism = Integer.parseInt(cmd.getOptionValue("p"));
+            }
+        }
+        //</editor-fold>
+
+        Jargon2Backend backend = (backendClass != null ? newBackend(backendClass) : discoverBackend());
+        ByteBufferJargon2Backend bufferBackend = ByteBufferJargon2Backend.of(backend);
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Configuration");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Backend:\t\t%s\n", backend.getClass().getName());
+        System.out.printf("Buffer support:\t\t%s\n", (backend instanceof ByteBufferJargon2Backend ? "yes" : "no (copying fallback)"));
+        System.out.printf("AD sizes:\t\t%s KB\n", Arrays.toString(sizes));
+        System.out.printf("Operations:\t\t%d per round\n", operations);
+        System.out.printf("Rounds:\t\t\t%d (best reported)\n", rounds);
+        System.out.printf("Salt length:\t\t%d bytes\n", saltLength);
+        System.out.printf("Password length:\t%d bytes\n", passwordLength);
+        System.out.printf("Hash length:\t\t%d bytes\n", hashLength);
+        System.out.printf("Type:\t\t\t%s\n", type.getValueCapitalized());
+        System.out.printf("Version:\t\t%s\n", version.name().toLowerCase());
+        System.out.printf("Memory cost:\t\t%d KB\n", memoryCost);
+        System.out.printf("Time cost:\t\t%d passes\n", timeCost);
+        System.out.printf("Parallelism:\t\t%d lanes/threads\n", parallelism);
+        System.out.println("--------------------------------------------------");
+
+        Random r = new Random();
+
+        byte[] salt = new byte[saltLength];
+        byte[] password = new byte[passwordLength];
+        r.nextBytes(salt);
+        r.nextBytes(password);
+        ByteBuffer saltBuffer = ByteBuffer.wrap(salt);
+        ByteBuffer passwordBuffer = ByteBuffer.wrap(password);
+
+        Hasher hasher = jargon2Hasher().backend(backend).type(type).version(version).memoryCost(memoryCost).timeCost(timeCost).parallelism(parallelism).hashLength(hashLength).salt(salt).password(password);
+
+        final Type t = type;
+        final Version v = version;
+        final int mc = memoryCost;
+        final int tc = timeCost;
+        final int p = parallelism;
+        final int hl = hashLength;
+
+        System.out.printf("%-10s %-24s %12s %16s %8s%n", "AD size", "Input", "ms/op", "allocated KB/op", "copies");
+
+        for (int size : sizes) {
+            byte[] ad = new byte[size * 1024];
+            r.nextBytes(ad);
+
+            Path file = Files.createTempFile("jargon2-ad-", ".bin");
+            file.toFile().deleteOnExit();
+            Files.write(file, ad);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(ad.length);
+            direct.put(ad).flip();
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, ad.length);
+                mapped.load();
+
+                String expected = hasher.ad(ad).encodedHash();
+
+                measure(size, "Hasher, byte[]", rounds, operations, ad.length, expected, () -> hasher.ad(ad).encodedHash());
+                measure(size, "Hasher, file bytes", rounds, operations, ad.length, expected, () -> hasher.ad(Files.readAllBytes(file)).encodedHash());
+                measure(size, "Hasher, InputStream", rounds, operations, ad.length, expected, () -> {
+                    try (InputStream in = Files.newInputStream(file); ByteArray adByteArray = toByteArray(in)) {
+                        return hasher.ad(adByteArray).encodedHash();
+                    }
+                });
+                measure(size, "Backend, heap buffer", rounds, operations, ad.length, expected, () -> bufferBackend.encodedHash(t, v, mc, tc, p, p, hl, null, ByteBuffer.wrap(ad), saltBuffer, passwordBuffer, null));
+                measure(size, "Backend, direct buffer", rounds, operations, ad.length, expected, () -> bufferBackend.encodedHash(t, v, mc, tc, p, p, hl, null, direct, saltBuffer, passwordBuffer, null));
+                measure(size, "Backend, mapped file", rounds, operations, ad.length, expected, () -> bufferBackend.encodedHash(t, v, mc, tc, p, p, hl, null, mapped, saltBuffer, passwordBuffer, null));
+            }
+
+            Files.delete(file);
+        }
+    }
+
+    @FunctionalInterface
+    interface Call {
+        String call() throws Exception;
+    }
+
+    /**
+     * Prints milliseconds and allocated bytes per operation of the best round (after one untimed round).
+     */
+    private static void measure(int size, String name, int rounds, int operations, int adLength, String expected, Call call) throws Exception {
+        double bestTime = Double.MAX_VALUE;
+        double bestAllocated = Double.MAX_VALUE;
+        for (int round = 0; round <= rounds; round++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                if (!expected.equals(call.call())) {
+                    throw new IllegalStateException(name + " produced a different hash");
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+            if (round > 0) {
+                bestTime = Math.min(bestTime, (double) elapsed / operations);
+                bestAllocated = Math.min(bestAllocated, (double) allocated / operations);
+            }
+        }
+        boolean supported = allocatedBytes() >= 0;
+        System.out.printf("%-10s %-24s %12.3f %16.1f %8.2f%n",
+                size + " KB",
+                name,
+                bestTime / (1000 * 1000),
+                (supported ? bestAllocated / 1024 : Double.NaN),
+                (supported ? bestAllocated / adLength : Double.NaN));
+    }
+
+    /**
+     * @return bytes allocated on the heap by the current thread so far, or a negative value if not supported
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static Jargon2Backend newBackend(Class<? extends Jargon2Backend> backendClass) {
+        try {
+            return backendClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Could not instantiate backend " + backendClass.getName(), e);
+        }
+    }
+
+    private static Jargon2Backend discoverBackend() {
+        Iterator<Jargon2Backend> backends = ServiceLoader.load(Jargon2Backend.class).iterator();
+        if (!backends.hasNext()) {
+            throw new IllegalStateException("No Jargon2 backend found, use --backend");
+        }
+        return backends.next();
+    }
+}
@@ -0,0 +1,127 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.api.Jargon2Exception;
+import com.kosprov.jargon2.spi.Jargon2Backend;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * A {@link Jargon2Backend} that accepts its inputs as {@link ByteBuffer}s, e.g. a multi-MB document bound into the hash
+ * as associated data, read through <tt>FileChannel.map</tt> or kept in a direct buffer.
+ *
+ * <p>
+ *     The remaining bytes of every buffer are used, without changing its position. A backend that can hand the memory
+ *     of a direct buffer to native code overrides these methods and avoids any heap copy. The default methods need the
+ *     <tt>byte[]</tt> of the SPI: a heap buffer that exactly covers its backing array is passed as is, any other buffer
+ *     is copied once (and the copy of the secret and password is cleared after the call).
+ * </p>
+ *
+ * <p>
+ *     No backend in this project implements these methods, so for now direct and mapped buffers are always copied to
+ *     the heap once.
+ * </p>
+ *
+ * <p>
+ *     Use {@link #of(Jargon2Backend)} to pass buffers to any backend: backends that don't implement this interface are
+ *     wrapped and fall back to copying.
+ * </p>
+ */
+public interface ByteBufferJargon2Backend extends Jargon2Backend {
+
+    /**
+     * Like {@link #encodedHash}, with buffer inputs. {@code secret} and {@code ad} may be <tt>null</tt>.
+     */
+    default String encodedHash(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, ByteBuffer secret, ByteBuffer ad, ByteBuffer salt, ByteBuffer password, Map<String, Object> options) throws Jargon2Exception {
+        byte[] secretBytes = Copying.toBytes(secret);
+        byte[] passwordBytes = Copying.toBytes(password);
+        try {
+            return encodedHash(type, version, memoryCost, timeCost, lanes, threads, hashLength, secretBytes, Copying.toBytes(ad), Copying.toBytes(salt), passwordBytes, options);
+        } finally {
+            Copying.clearCopy(secret, secretBytes);
+            Copying.clearCopy(password, passwordBytes);
+        }
+    }
+
+    /**
+     * Like {@link #verifyEncoded}, with buffer inputs. {@code secret} and {@code ad} may be <tt>null</tt>.
+     */
+    default boolean verifyEncoded(String encodedHash, int threads, ByteBuffer secret, ByteBuffer ad, ByteBuffer password, Map<String, Object> options) throws Jargon2Exception {
+        byte[] secretBytes = Copying.toBytes(secret);
+        byte[] passwordBytes = Copying.toBytes(password);
+        try {
+            return verifyEncoded(encodedHash, threads, secretBytes, Copying.toBytes(ad), passwordBytes, options);
+        } finally {
+            Copying.clearCopy(secret, secretBytes);
+            Copying.clearCopy(password, passwordBytes);
+        }
+    }
+
+    /**
+     * @return the backend itself if it accepts buffers, otherwise a wrapper that copies them to arrays
+     */
+    static ByteBufferJargon2Backend of(Jargon2Backend backend) {
+        if (backend instanceof ByteBufferJargon2Backend) {
+            return (ByteBufferJargon2Backend) backend;
+        }
+        return new Copying(backend);
+    }
+
+    final class Copying implements ByteBufferJargon2Backend {
+        private final Jargon2Backend backend;
+
+        private Copying(Jargon2Backend backend) {
+            this.backend = backend;
+        }
+
+        /**
+         * @return the backing array of a heap buffer whose remaining bytes are the whole array, otherwise a copy of the
+         *     remaining bytes
+         */
+        static byte[] toBytes(ByteBuffer buffer) {
+            if (buffer == null) {
+                return null;
+            }
+            if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+                return buffer.array();
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return bytes;
+        }
+
+        static void clearCopy(ByteBuffer buffer, byte[] bytes) {
+            if (bytes != null && !(buffer.hasArray() && buffer.array() == bytes)) {
+                Arrays.fill(bytes, (byte) 0);
+            }
+        }
+
+        @Override
+        public byte[] rawHash(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.rawHash(type, version, memoryCost, timeCost, lanes, threads, hashLength, secret, ad, salt, password, options);
+        }
+
+        @Override
+        public String encodedHash(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.encodedHash(type, version, memoryCost, timeCost, lanes, threads, hashLength, secret, ad, salt, password, options);
+        }
+
+        @Override
+        public boolean verifyRaw(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, byte[] rawHash, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.verifyRaw(type, version, memoryCost, timeCost, lanes, threads, rawHash, secret, ad, salt, password, options);
+        }
+
+        @Override
+        public boolean verifyEncoded(String encodedHash, int threads, byte[] secret, byte[] ad, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+            return backend.verifyEncoded(encodedHash, threads, secret, ad, password, options);
+        }
+
+        @Override
+        public String toString() {
+            return backend.getClass().getName() + " (copying)";
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.spi.Jargon2Backend;
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Runs the multi-threaded hash / verify loop in several JVMs on the same host, as several service instances would,
+ * and merges their results into one report.
+ *
+ * <p>
+ *     The coordinator (this class without <tt>--worker</tt>) spawns N worker JVMs with the same arguments, waits until all
+ *     of them are connected to its loopback socket and then tells them to start at the same moment. Every reporting
+ *     interval, each worker sends its hash / verify latency histograms, operation count and RSS. The coordinator merges
+ *     them into one row per interval (aggregate ops/s, cluster-wide percentiles, per-instance RSS).
+ * </p>
+ *
+ * <p>
+ *     With a list of instance counts (e.g. <tt>--instances 1,2,4,8</tt>), it repeats the run for each count and prints
+ *     how throughput and latency scale with the number of instances on the host.
+ * </p>
+ */
+public class ClusterLoad {
+
+    private static final byte HELLO = 1;
+    private static final byte START = 2;
+    private static final byte REPORT = 3;
+    private static final byte DONE = 4;
+
+    public static void main(String[] args) throws Exception {
+
+        int[] instanceCounts = { 2 };
+        String jvmOptions = "-Xms128m -Xmx128m";
+        boolean worker = false;
+        int coordinatorPort = 0;
+        int instance = 0;
+        Class<? extends Jargon2Backend> backend = null; // discovered
+        long runtime = 60 * 1000;
+        long reportInterval = 5 * 1000;
+        int javaThreads = 1;
+        int saltLength = 16;
+        int passwordLength = 32;
+        int secretLength = 16;
+        int adLength = 32;
+        int hashLength = 16;
+        Type type = Type.ARGON2id;
+        Version version = Version.V13;
+        int memoryCost = 4 * 1024;
+        int timeCost = 2;
+        int parallelism = 2;
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("n").longOpt("instances").hasArg(true).argName("N,N,...").desc("Number of worker JVMs, or a list of numbers to run one after the other (default: " + instanceCounts[0] + ")").build());
+            options.addOption(Option.builder("jo").longOpt("jvmOptions").hasArg(true).argName("options").desc("JVM options of every worker (default: \"" + jvmOptions + "\")").build());
+            options.addOption(Option.builder("b").longOpt("backend").hasArg(true).argName("class").desc("Class name of the Argon2 backend (default: automatic)").build());
+            options.addOption(Option.builder("rt").longOpt("runtime").hasArg(true).argName("N").desc("Run for N seconds (default: " + (runtime / 1000) + ")").build());
+            options.addOption(Option.builder("ri").longOpt("reportInterval").hasArg(true).argName("N").desc("Merge and print results every N seconds (default: " + (reportInterval / 1000) + ")").build());
+            options.addOption(Option.builder("jt").longOpt("javaThreads").hasArg(true).argName("N").desc("Number of Java threads per worker (default: " + javaThreads + ")").build());
+            options.addOption(Option.builder("sl").longOpt("saltLength").hasArg(true).argName("N").desc("Number of salt bytes (default: " + saltLength + ")").build());
+            options.addOption(Option.builder("pl").longOpt("passwordLength").hasArg(true).argName("N").desc("Number of password bytes (default: " + passwordLength + ")").build());
+            options.addOption(Option.builder("kl").longOpt("secretLength").hasArg(true).argName("N").desc("Number of secret bytes (default: " + secretLength + ")").build());
+            options.addOption(Option.builder("al").longOpt("adLength").hasArg(true).argName("N").desc("Number of ad bytes (default: " + adLength + ")").build());
+            options.addOption(Option.builder("hl").longOpt("hashLength").hasArg(true).argName("N").desc("Number of output hash bytes (default: " + hashLength + ")").build());
+            options.addOption(Option.builder("t").longOpt("type").hasArg(true).argName("i|d|id").desc("Argon2 type (default: " + type.getValue().replace("argon2", "") + ")").build());
+            options.addOption(Option.builder("v").longOpt("version").hasArg(true).argName("10|13").desc("Argon2 version (default: " + version.name().replace("V", "") + ")").build());
+            options.addOption(Option.builder("mc").longOpt("memoryCost").hasArg(true).argName("N").desc("Number of KB of memory used for hash calculation (default: " + memoryCost + ")").build());
+            options.addOption(Option.builder("tc").longOpt("timeCost").hasArg(true).argName("N").desc("Number of passes through memory during hash calculation (default: " + timeCost + ")").build());
+            options.addOption(Option.builder("p").longOpt("parallelism").hasArg(true).argName("N").desc("Number of lanes/threads used for hash calculation (default: " + parallelism + ")").build());
+            options.addOption(Option.builder("worker").desc("Internal: run as a worker of a coordinator").build());
+            options.addOption(Option.builder("port").hasArg(true).argName("N").desc("Internal: port of the coordinator").build());
+            options.addOption(Option.builder("instance").hasArg(true).argName("N").desc("Internal: index of this worker").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h")) {
+                System.out.println("Runs the hash / verify loop in several JVMs and merges their latency histograms and counters.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -cp path_to_jar " + ClusterLoad.class.getName() + " [options]", options);
+                System.exit(0);
+            }
+
+            if (cmd.hasOption("n")) {
+                instanceCounts = Arrays.stream(cmd.getOptionValue("n").split(",")).mapToInt(val -> Integer.parseInt(val.trim())).toArray();
+            }
+
+            if (cmd.hasOption("jo")) {
+                jvmOptions = cmd.getOptionValue("jo");
+            }
+
+            if (cmd.hasOption("worker")) {
+                worker = true;
+                coordinatorPort = Integer.parseInt(cmd.getOptionValue("port"));
+                instance = Integer.parseInt(cmd.getOptionValue("instance"));
+            }
+
+            if (cmd.hasOption("b")) {
+                backend = Class.forName(cmd.getOptionValue("b")).asSubclass(Jargon2Backend.class);
+            }
+
+            if (cmd.hasOption("rt")) {
+                runtime = Long.parseLong(cmd.getOptionValue("rt")) * 1000;
+            }
+
+            if (cmd.hasOption("ri")) {
+                reportInterval = Long.parseLong(cmd.getOptionValue("ri")) * 1000;
+            }
+
+            if (cmd.hasOption("jt")) {
+                javaThreads = Integer.parseInt(cmd.getOptionValue("jt"));
+            }
+
+            if (cmd.hasOption("sl")) {
+                saltLength = Integer.parseInt(cmd.getOptionValue("sl"));
+            }
+
+            if (cmd.hasOption("pl")) {
+                passwordLength = Integer.parseInt(cmd.getOptionValue("pl"));
+            }
+
+            if (cmd.hasOption("kl")) {
+                secretLength = Integer.parseInt(cmd.getOptionValue("kl"));
+            }
+
+            if (cmd.hasOption("al")) {
+                adLength = Integer.parseInt(cmd.getOptionValue("al"));
+            }
+
+            if (cmd.hasOption("hl")) {
+                hashLength = Integer.parseInt(cmd.getOptionValue("hl"));
+            }
+
+            if (cmd.hasOption("t")) {
+                String val = cmd.getOptionValue("t");
+                if ("i".equals(val)) {
+                    type = Type.ARGON2i;
+                } else if ("d".equals(val)) {
+                    type = Type.ARGON2d;
+                } else if (!"id".equals(val)) {
+                    throw new IllegalArgumentException("wrong type " + val);
+                }
+            }
+
+            if (cmd.hasOption("v")) {
+                String val = cmd.getOptionValue("v");
+                if ("10".equals(val)) {
+                    version = Version.V10;
+                } else if (!"13".equals(val)) {
+                    throw new IllegalArgumentException("wrong version " + val);
+                }
+            }
+
+            if (cmd.hasOption("mc")) {
+                memoryCost = Integer.parseInt(cmd.getOptionValue("mc"));
+            }
+
+            if (cmd.hasOption("tc")) {
+                timeCost = Integer.parseInt(cmd.getOptionValue("tc"));
+            }
+
+            if (cmd.hasOption("p")) {
+                parallelism = Integer.parseInt(cmd.getOptionValue("p"));
+            }
+        }
+        //</editor-fold>
+
+        if (worker) {
+            Random r = new Random();
+
+            byte[] secret = null;
+            if (secretLength > 0) {
+                secret = new byte[secretLength];
+                r.nextBytes(secret);
+            }
+
+            Hasher hasher = (backend != null ? jargon2Hasher().backend(backend) : jargon2Hasher())
+                    .type(type)
+                    .version(version)
+                    .memoryCost(memoryCost)
+                    .timeCost(timeCost)
+                    .parallelism(parallelism)
+                    .hashLength(hashLength)
+                    .secret(secret);
+
+            Verifier verifier = (backend != null ? jargon2Verifier().backend(backend) : jargon2Verifier())
+                    .secret(secret);
+
+            MultiThreadedHashVerifyLoop.HashVerifyLoop[] loops = new MultiThreadedHashVerifyLoop.HashVerifyLoop[javaThreads];
+            AtomicLong hashCounter = new AtomicLong();
+            CountDownLatch completionLatch = new CountDownLatch(javaThreads);
+            IntervalRecorder hashLatencies = new IntervalRecorder();
+            IntervalRecorder verifyLatencies = new IntervalRecorder();
+
+            for (int i = 0; i < javaThreads; i++) {
+                loops[i] = new MultiThreadedHashVerifyLoop.HashVerifyLoop(
+                        hashCounter,
+                        completionLatch,
+                        adLength,
+                        saltLength,
+                        passwordLength,
+                        (ad, salt, password) -> hasher.ad(ad).salt(salt).password(password).encodedHash(),
+                        (hash, ad, password) -> verifier.hash(hash).ad(ad).password(password).verifyEncoded()
+                ).recordLatencies(hashLatencies, verifyLatencies);
+            }
+
+            runWorker(coordinatorPort, instance, runtime, reportInterval, loops, hashCounter, completionLatch, hashLatencies, verifyLatencies);
+            return;
+        }
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Configuration");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Instances:\t\t%s\n", Arrays.toString(instanceCounts));
+        System.out.printf("JVM options:\t\t%s\n", jvmOptions);
+        System.out.printf("Backend:\t\t%s\n", (backend != null ? backend.getName() : "automatic"));
+        System.out.printf("Runtime:\t\t%d seconds\n", runtime / 1000);
+        System.out.printf("Report interval:\t%d seconds\n", reportInterval / 1000);
+        System.out.printf("Java threads:\t\t%d per instance\n", javaThreads);
+        System.out.printf("Salt length:\t\t%d bytes\n", saltLength);
+        System.out.printf("Password length:\t%d bytes\n", passwordLength);
+        System.out.printf("Secret length:\t\t%d bytes\n", secretLength);
+        System.out.printf("AD length:\t\t%d bytes\n", adLength);
+        System.out.printf("Hash length:\t\t%d bytes\n", hashLength);
+        System.out.printf("Type:\t\t\t%s\n", type.getValueCapitalized());
+        System.out.printf("Version:\t\t%s\n", version.name().toLowerCase());
+        System.out.printf("Memory cost:\t\t%d KB\n", memoryCost);
+        System.out.printf("Time cost:\t\t%d passes\n", timeCost);
+        System.out.printf("Parallelism:\t\t%d lanes/threads\n", parallelism);
+        System.out.println("--------------------------------------------------");
+
+        List<RunSummary> summaries = new ArrayList<>();
+        for (int instances : instanceCounts) {
+            summaries.add(coordinate(instances, jvmOptions, args, runtime, reportInterval));
+        }
+
+        System.out.println();
+        System.out.printf("%-10s %12s %14s %12s %12s %12s %12s %14s%n", "Instances", "ops/s", "ops/s/inst.", "scaling", "hash p99", "verify p99", "verify max", "RSS/inst. (KB)");
+        double single = summaries.get(0).opsPerSecond / summaries.get(0).instances;
+        for (RunSummary summary : summaries) {
+            System.out.printf("%-10d %12.1f %14.1f %11.0f%% %10.2fms %10.2fms %10.2fms %14.0f%n",
+                    summary.instances,
+                    summary.opsPerSecond,
+                    summary.opsPerSecond / summary.instances,
+                    (summary.opsPerSecond / summary.instances) / single * 100,
+                    toMillis(summary.hash.percentile(99)),
+                    toMillis(summary.verify.percentile(99)),
+                    toMillis(summary.verify.max()),
+                    summary.averageRss);
+        }
+    }
+
+    private static RunSummary coordinate(int instances, String jvmOptions, String[] args, long runtime, long reportInterval) throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("hh:mm:ss");
+
+        // Bounds both the wait for all workers to connect and the wait for each report, so that a worker that fails
+        // to start or dies mid-run fails the coordinator instead of hanging it
+        int timeout = (int) Math.max(30 * 1000, runtime + reportInterval);
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+
+        RunSummary summary = new RunSummary(instances);
+        Map<Integer, Interval> intervals = new ConcurrentHashMap<>();
+
+        try (ServerSocket server = new ServerSocket(0, instances, InetAddress.getLoopbackAddress())) {
+
+            List<Process> processes = new ArrayList<>();
+            boolean completed = false;
+            try {
+                for (int i = 0; i < instances; i++) {
+                    List<String> command = new ArrayList<>();
+                    command.add(java);
+                    for (String option : jvmOptions.trim().split("\\s+")) {
+                        if (!option.isEmpty()) {
+                            command.add(option);
+                        }
+                    }
+                    command.addAll(Arrays.asList("-cp", classpath, ClusterLoad.class.getName()));
+                    command.addAll(Arrays.asList(args));
+                    command.addAll(Arrays.asList("-worker", "-port", String.valueOf(server.getLocalPort()), "-instance", String.valueOf(i)));
+
+                    processes.add(new ProcessBuilder(command)
+                            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                            .redirectError(ProcessBuilder.Redirect.INHERIT)
+                            .start());
+                }
+
+                Socket[] sockets = new Socket[instances];
+                DataInputStream[] inputs = new DataInputStream[instances];
+                long[] pids = new long[instances];
+                long connectDeadline = System.currentTimeMillis() + timeout;
+                for (int i = 0; i < instances; i++) {
+                    server.setSoTimeout((int) Math.max(1, connectDeadline - System.currentTimeMillis()));
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (SocketTimeoutException e) {
+                        throw new IllegalStateException("Only " + i + " of " + instances + " workers connected within " + (timeout / 1000) + " seconds", e);
+                    }
+                    socket.setSoTimeout(timeout);
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    if (in.readByte() != HELLO) {
+                        throw new IllegalStateException("Expected hello from worker");
+                    }
+                    int instance = in.readInt();
+                    sockets[instance] = socket;
+                    inputs[instance] = in;
+                    pids[instance] = in.readLong();
+                }
+
+                System.out.printf("%n[%s] %d instances connected (pids: %s). Starting...%n", sdf.format(new Date()), instances, Arrays.toString(pids));
+
+                // All workers start at the same wall-clock time, regardless of how fast they get the message
+                long startAt = System.currentTimeMillis() + 500;
+                for (Socket socket : sockets) {
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    out.writeByte(START);
+                    out.writeLong(startAt);
+                    out.flush();
+                }
+
+                StringBuilder header = new StringBuilder("T,INSTANCES,OPS/S,HASH_P50,HASH_P99,VERIFY_P50,VERIFY_P99,RSS_TOTAL");
+                for (int i = 0; i < instances; i++) {
+                    header.append(",RSS_").append(i);
+                }
+                System.out.println(header);
+
+                AtomicReference<IllegalStateException> readerFailure = new AtomicReference<>();
+                Thread[] readers = new Thread[instances];
+                for (int i = 0; i < instances; i++) {
+                    DataInputStream in = inputs[i];
+                    int instance = i;
+                    readers[i] = new Thread(() -> {
+                        try {
+                            byte message;
+                            while ((message = in.readByte()) == REPORT) {
+                                int index = in.readInt();
+                                long elapsed = in.readLong();
+                                long duration = in.readLong();
+                                long operations = in.readLong();
+                                long rss = in.readLong();
+                                LatencyHistogram hash = LatencyHistogram.readFrom(in);
+                                LatencyHistogram verify = LatencyHistogram.readFrom(in);
+
+                                summary.add(operations, hash, verify, rss);
+
+                                Interval interval = intervals.computeIfAbsent(index, k -> new Interval(instances));
+                                if (interval.add(instance, elapsed, duration, operations, hash, verify, rss)) {
+                                    intervals.remove(index);
+                                    interval.print();
+                                }
+                            }
+                            if (message != DONE) {
+                                throw new IllegalStateException("Unexpected message " + message);
+                            }
+                        } catch (SocketTimeoutException e) {
+                            readerFailure.compareAndSet(null, new IllegalStateException("No report from worker " + instance + " within " + (timeout / 1000) + " seconds", e));
+                        } catch (IOException | RuntimeException e) {
+                            readerFailure.compareAndSet(null, new IllegalStateException("Lost worker " + instance, e));
+                        }
+                    });
+                    readers[i].setName("ClusterLoad-reader-" + i);
+                    readers[i].start();
+                }
+
+                for (Thread reader : readers) {
+                    reader.join();
+                }
+                if (readerFailure.get() != null) {
+                    throw readerFailure.get();
+                }
+
+                for (Process process : processes) {
+                    process.waitFor();
+                }
+
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    for (Process process : processes) {
+                        process.destroyForcibly();
+                    }
+                }
+            }
+        }
+
+        summary.opsPerSecond = summary.operations / (runtime / 1000.0);
+
+        System.out.printf("[%s] %d instances: %.1f ops/s, hash p50 %.2fms p99 %.2fms, verify p50 %.2fms p99 %.2fms%n",
+                sdf.format(new Date()),
+                instances,
+                summary.opsPerSecond,
+                toMillis(summary.hash.percentile(50)),
+                toMillis(summary.hash.percentile(99)),
+                toMillis(summary.verify.percentile(50)),
+                toMillis(summary.verify.percentile(99)));
+
+        return summary;
+    }
+
+    private static void runWorker(int port,
+                                  int instance,
+                                  long runtime,
+                                  long reportInterval,
+                                  MultiThreadedHashVerifyLoop.HashVerifyLoop[] loops,
+                                  AtomicLong hashCounter,
+                                  CountDownLatch completionLatch,
+                                  IntervalRecorder hashLatencies,
+                                  IntervalRecorder verifyLatencies) throws Exception {
+
+        String pid = MultiThreadedHashVerifyLoop.getProcessId();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            out.writeByte(HELLO);
+            out.writeInt(instance);
+            out.writeLong(Long.parseLong(pid));
+            out.flush();
+
+            if (in.readByte() != START) {
+                throw new IllegalStateException("Expected start from coordinator");
+            }
+            long startAt = in.readLong();
+            Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+
+            long start = System.currentTimeMillis();
+
+            for (int i = 0; i < loops.length; i++) {
+                Thread thread = new Thread(loops[i]);
+                thread.setName("HashVerifyLoop-" + i);
+                thread.start();
+            }
+
+            long reported = 0;
+            long reportedAt = start;
+            int index = 0;
+            while (true) {
+                long elapsed = System.currentTimeMillis() - start;
+                long next = Math.min((index + 1) * reportInterval, runtime);
+                if (next > elapsed) {
+                    Thread.sleep(next - elapsed);
+                }
+
+                long now = System.currentTimeMillis();
+                long operations = hashCounter.get();
+                LatencyHistogram hash = hashLatencies.intervalHistogram();
+                LatencyHistogram verify = verifyLatencies.intervalHistogram();
+
+                out.writeByte(REPORT);
+                out.writeInt(index++);
+                out.writeLong(now - start);
+                out.writeLong(now - reportedAt);
+                out.writeLong(operations - reported);
+                out.writeLong(rss(pid));
+                hash.writeTo(out);
+                verify.writeTo(out);
+                out.flush();
+
+                reported = operations;
+                reportedAt = now;
+
+                if (next >= runtime) {
+                    break;
+                }
+            }
+
+            for (MultiThreadedHashVerifyLoop.HashVerifyLoop loop : loops) {
+                loop.stop();
+            }
+            completionLatch.await(1, TimeUnit.MINUTES);
+
+            out.writeByte(DONE);
+            out.flush();
+        }
+    }
+
+    /**
+     * @return resident set size in KB, as reported by <tt>ps</tt> (0 if not available)
+     */
+    private static long rss(String pid) {
+        try {
+            Process ps = Runtime.getRuntime().exec(new String[] { "ps", "-p", pid, "-o", "rss=" });
+            ps.waitFor();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(ps.getInputStream()))) {
+                String line = reader.readLine();
+                return line != null ? Long.parseLong(line.trim()) : 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / (1000 * 1000);
+    }
+
+    static class Interval {
+        private final int instances;
+        private final long[] rss;
+        private final LatencyHistogram hash = new LatencyHistogram();
+        private final LatencyHistogram verify = new LatencyHistogram();
+        private long elapsed;
+        private long duration;
+        private long operations;
+        private int reported;
+
+        Interval(int instances) {
+            this.instances = instances;
+            this.rss = new long[instances];
+        }
+
+        /**
+         * @return whether all instances have reported this interval
+         */
+        synchronized boolean add(int instance, long elapsed, long duration, long operations, LatencyHistogram hash, LatencyHistogram verify, long rss) {
+            this.elapsed = Math.max(this.elapsed, elapsed);
+            this.duration = Math.max(this.duration, duration);
+            this.operations += operations;
+            this.hash.merge(hash);
+            this.verify.merge(verify);
+            this.rss[instance] = rss;
+            return ++reported == instances;
+        }
+
+        synchronized void print() {
+            StringBuilder row = new StringBuilder();
+            long total = 0;
+            for (long value : rss) {
+                total += value;
+            }
+            row.append(elapsed).append(',')
+                    .append(instances).append(',')
+                    .append(String.format("%.1f", operations * 1000.0 / Math.max(1, duration))).append(',')
+                    .append(String.format("%.2f", toMillis(hash.percentile(50)))).append(',')
+                    .append(String.format("%.2f", toMillis(hash.percentile(99)))).append(',')
+                    .append(String.format("%.2f", toMillis(verify.percentile(50)))).append(',')
+                    .append(String.format("%.2f", toMillis(verify.percentile(99)))).append(',')
+                    .append(total);
+            for (long value : rss) {
+                row.append(',').append(value);
+            }
+            System.out.println(row);
+        }
+    }
+
+    static class RunSummary {
+        final int instances;
+        final LatencyHistogram hash = new LatencyHistogram();
+        final LatencyHistogram verify = new LatencyHistogram();
+        long operations;
+        double opsPerSecond;
+        double averageRss;
+        private long rssSamples;
+
+        RunSummary(int instances) {
+            this.instances = instances;
+        }
+
+        synchronized void add(long operations, LatencyHistogram hash, LatencyHistogram verify, long rss) {
+            this.operations += operations;
+            this.hash.merge(hash);
+            this.verify.merge(verify);
+            this.averageRss = (averageRss * rssSamples + rss) / (rssSamples + 1);
+            this.rssSamples++;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.kosprov.jargon2.examples;
+
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the cold-start time of {@link CommandLineUtility} with and without an AppCDS archive.
+ *
+ * <p>
+ *     Every run launches a new JVM with the jar, writes the password to its standard input and measures the time until
+ *     the first line of output is read (time-to-first-hash), as well as the time until the process exits. The utility
+ *     always runs with <tt>-e</tt> (or <tt>-r</tt>, if given), so that the first line is the hash and not a banner.
+ *     Runs of the different configurations are interleaved, so that any drift of the machine affects all of them equally.
+ * </p>
+ *
+ * <p>
+ *     Build with <tt>mvn -Pappcds package</tt> first, so that the archive exists next to the jar.
+ * </p>
+ */
+public class ColdStartBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        String jar = null; // this jar
+        String archive = null; // jar file name with .jsa extension
+        int runs = 20;
+        String cliArgs = "somesalt -e -id -t 1 -m 10 -p 1";
+        String password = "password";
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("j").longOpt("jar").hasArg(true).argName("file").desc("Path of the jar to launch (default: this jar)").build());
+            options.addOption(Option.builder("a").longOpt("archive").hasArg(true).argName("file").desc("Path of the AppCDS archive (default: jar path with .jsa extension)").build());
+            options.addOption(Option.builder("r").longOpt("runs").hasArg(true).argName("N").desc("Number of launches per configuration (default: " + runs + ")").build());
+            options.addOption(Option.builder("ca").longOpt("cliArgs").hasArg(true).argName("args").desc("Arguments of the command line utility, -e is added unless -e or -r is given (default: \"" + cliArgs + "\")").build());
+            options.addOption(Option.builder("pw").longOpt("password").hasArg(true).argName("value").desc("Password written to standard input (default: " + password + ")").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h")) {
+                System.out.println("Measures the cold-start time of the command line utility with and without an AppCDS archive.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -cp path_to_jar " + ColdStartBenchmark.class.getName() + " [options]", options);
+                System.exit(0);
+            }
+
+            if (cmd.hasOption("j")) {
+                jar = cmd.getOptionValue("j");
+            }
+
+            if (cmd.hasOption("a")) {
+                archive = cmd.getOptionValue("a");
+            }
+
+            if (cmd.hasOption("r")) {
+                runs = Integer.parseInt(cmd.getOptionValue("r"));
+            }
+
+            if (cmd.hasOption("ca")) {
+                cliArgs = cmd.getOptionValue("ca");
+                List<String> cliOptions = Arrays.asList(cliArgs.trim().split(" +"));
+                if (!cliOptions.contains("-e") && !cliOptions.contains("-r")) {
+                    cliArgs += " -e"; // otherwise the first line is the verbose banner, not the hash
+                }
+            }
+
+            if (cmd.hasOption("pw")) {
+                password = cmd.getOptionValue("pw");
+            }
+        }
+        //</editor-fold>
+
+        if (jar == null) {
+            jar = new File(ColdStartBenchmark.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        }
+
+        if (archive == null) {
+            archive = jar.replaceAll("\\.jar$", "") + ".jsa";
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        List<Launch> launches = new ArrayList<>();
+        launches.add(new Launch("default"));
+        if (new File(archive).isFile()) {
+            launches.add(new Launch("appcds", "-XX:SharedArchiveFile=" + archive, "-Xshare:auto"));
+            launches.add(new Launch("appcds+c1", "-XX:SharedArchiveFile=" + archive, "-Xshare:auto", "-XX:TieredStopAtLevel=1"));
+        } else {
+            System.out.printf("No AppCDS archive at %s (build with mvn -Pappcds package). Measuring default launch only.%n", archive);
+        }
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Configuration");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Java:\t\t\t%s\n", java);
+        System.out.printf("Jar:\t\t\t%s\n", jar);
+        System.out.printf("Archive:\t\t%s\n", archive);
+        System.out.printf("Runs:\t\t\t%d\n", runs);
+        System.out.printf("CLI arguments:\t\t%s\n", cliArgs);
+        System.out.println("--------------------------------------------------");
+
+        byte[] input = password.getBytes(StandardCharsets.UTF_8);
+
+        for (Launch launch : launches) {
+            launch.firstHash = new long[runs];
+            launch.exit = new long[runs];
+        }
+
+        // One untimed launch per configuration to bring the jar and the archive into the page cache
+        for (Launch launch : launches) {
+            launch.run(java, jar, cliArgs, input);
+        }
+
+        for (int i = 0; i < runs; i++) {
+            for (Launch launch : launches) {
+                long[] elapsed = launch.run(java, jar, cliArgs, input);
+                launch.firstHash[i] = elapsed[0];
+                launch.exit[i] = elapsed[1];
+            }
+        }
+
+        System.out.printf("%-12s %-16s %10s %10s %10s %10s%n", "Launch", "Measure", "min (ms)", "p50 (ms)", "avg (ms)", "max (ms)");
+        for (Launch launch : launches) {
+            printRow(launch.name, "first hash", launch.firstHash);
+            printRow(launch.name, "process exit", launch.exit);
+        }
+    }
+
+    private static void printRow(String name, String measure, long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-12s %-16s %10.1f %10.1f %10.1f %10.1f%n",
+                name,
+                measure,
+                toMillis(sorted[0]),
+                toMillis(sorted[sorted.length / 2]),
+                toMillis(Arrays.stream(sorted).average().orElse(0)),
+                toMillis(sorted[sorted.length - 1]));
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / (1000 * 1000);
+    }
+
+    static class Launch {
+        final String name;
+        final String[] jvmOptions;
+        long[] firstHash;
+        long[] exit;
+
+        Launch(String name, String... jvmOptions) {
+            this.name = name;
+            this.jvmOptions = jvmOptions;
+        }
+
+        /**
+         * @return time-to-first-hash and time-to-exit in nanoseconds
+         */
+        long[] run(String java, String jar, String cliArgs, byte[] input) throws Exception {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(Arrays.asList(jvmOptions));
+            command.add("-jar");
+            command.add(jar);
+            command.addAll(Arrays.asList(cliArgs.trim().split(" +")));
+
+            ProcessBuilder pb = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+
+            long start = System.nanoTime();
+            Process process = pb.start();
+
+            try (OutputStream stdin = process.getOutputStream()) {
+                stdin.write(input);
+            }
+
+            long firstLine;
+            try (BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                if (stdout.readLine() == null) {
+                    throw new IllegalStateException("No output from " + command);
+                }
+                firstLine = System.nanoTime() - start;
+                while (stdout.readLine() != null) {
+                    // drain
+                }
+            }
+
+            int exitCode = process.waitFor();
+            long exited = System.nanoTime() - start;
+
+            if (exitCode != 0) {
+                throw new IllegalStateException("Exit code " + exitCode + " from " + command);
+            }
+
+            return new long[] { firstLine, exited };
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.kosprov.jargon2.examples;
 
 import org.apache.commons.cli.*;
-import org.apache.commons.codec.binary.Hex;
+
+import java.util.Arrays;
 
 import static com.kosprov.jargon2.api.Jargon2.*;
 
@@ -32,10 +33,31 @@ import static com.kosprov.jargon2.api.Jargon2.*;
  *     0.180 seconds
  *     Verification ok
  * </pre>
+ *
+ * <p>
+ *     With <tt>--daemon</tt> or <tt>--client</tt> as the first argument, it runs {@link HashDaemon} or
+ *     {@link HashDaemonClient} instead.
+ * </p>
+ *
+ * <p>
+ *     Since it is meant to be called once per hash, it avoids any work that is not needed for the requested output
+ *     (e.g. no verifier is created unless the verbose output is requested). For fast start, build with
+ *     <tt>mvn -Pappcds package</tt> and run through <tt>scripts/fast-start/jargon2.sh</tt>.
+ * </p>
  */
 public class CommandLineUtility {
     public static void main(String[] args) throws Exception {
 
+        if (args.length > 0 && "--daemon".equals(args[0])) {
+            HashDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        if (args.length > 0 && "--client".equals(args[0])) {
+            HashDaemonClient.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Defaults
         Type type = Type.ARGON2i;
         Version version = Version.V13;
@@ -151,8 +173,6 @@ public class CommandLineUtility {
                 .parallelism(parallelism)
                 .hashLength(hashLength);
 
-        Verifier verifier = jargon2Verifier();
-
         String rawHashHex = null;
         String encodedHash = null;
 
@@ -161,7 +181,7 @@ public class CommandLineUtility {
 
             if (verbose || rawOnly) {
                 byte[] rawHash = hasher.salt(salt).password(password).rawHash();
-                rawHashHex = Hex.encodeHexString(rawHash).toLowerCase();
+                rawHashHex = toHex(rawHash);
             }
 
             if (verbose || encodedOnly) {
@@ -184,7 +204,7 @@ public class CommandLineUtility {
                 long elapsed = System.currentTimeMillis() - start;
                 System.out.printf("%2.3f seconds\n", ((double) elapsed / 1000));
 
-                boolean verificationOk = verifier.hash(encodedHash).password(password).verifyEncoded();
+                boolean verificationOk = jargon2Verifier().hash(encodedHash).password(password).verifyEncoded();
                 if (verificationOk) {
                     System.out.println("Verification ok");
                 } else {
@@ -194,10 +214,20 @@ public class CommandLineUtility {
         }
     }
 
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
     private static void exit(Options options) {
         HelpFormatter formatter = new HelpFormatter();
         formatter.setOptionComparator(null);
-        formatter.printHelp( "java -jar path_to_jar salt [options]", options);
+        formatter.printHelp( "java -jar path_to_jar salt [options]", null, options, "\nDaemon mode: java -jar path_to_jar --daemon -h\nClient mode: java -jar path_to_jar --client -h");
         System.exit(-1);
     }
 
@@ -0,0 +1,213 @@
+package com.kosprov.jargon2.examples;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Wire format between {@link HashDaemon} and {@link HashDaemonClient}.
+ *
+ * <p>
+ *     Every message is a frame: a 4-byte big-endian length followed by that many bytes. Byte arrays and strings inside a
+ *     frame are also length-prefixed (4 bytes, UTF-8 for strings).
+ * </p>
+ * <pre>
+ *     hash request:    id (8) | OP_HASH (1) | type (1) | version (1) | memoryCost (4) | timeCost (4) | parallelism (4) | hashLength (4) | salt | password | ad
+ *     verify request:  id (8) | OP_VERIFY (1) | encoded hash | password | ad
+ *     response:        id (8) | status (1) | encoded hash (hash), empty (verify) or error message
+ * </pre>
+ * <p>
+ *     Requests carry a client-chosen id, which is echoed in the response. Responses of pipelined requests may arrive
+ *     in any order.
+ * </p>
+ *
+ * <p>
+ *     Unix domain socket channels are available since Java 16. They are looked up reflectively, so that the rest of the
+ *     project still builds and runs on Java 8.
+ * </p>
+ */
+final class DaemonProtocol {
+
+    static final byte OP_HASH = 1;
+    static final byte OP_VERIFY = 2;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_MISMATCH = 1;
+    static final byte STATUS_ERROR = 2;
+
+    static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private DaemonProtocol() {
+    }
+
+    static byte[] hashRequest(long id, Type type, Version version, int memoryCost, int timeCost, int parallelism, int hashLength, byte[] salt, byte[] password, byte[] ad) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 1 + 1 + 1 + 4 * 4 + sizeOf(salt) + sizeOf(password) + sizeOf(ad));
+        buffer.putLong(id);
+        buffer.put(OP_HASH);
+        buffer.put((byte) type.ordinal());
+        buffer.put((byte) version.getValue());
+        buffer.putInt(memoryCost);
+        buffer.putInt(timeCost);
+        buffer.putInt(parallelism);
+        buffer.putInt(hashLength);
+        putBytes(buffer, salt);
+        putBytes(buffer, password);
+        putBytes(buffer, ad);
+        return buffer.array();
+    }
+
+    static byte[] verifyRequest(long id, String encodedHash, byte[] password, byte[] ad) {
+        byte[] hash = encodedHash.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 1 + sizeOf(hash) + sizeOf(password) + sizeOf(ad));
+        buffer.putLong(id);
+        buffer.put(OP_VERIFY);
+        putBytes(buffer, hash);
+        putBytes(buffer, password);
+        putBytes(buffer, ad);
+        return buffer.array();
+    }
+
+    static byte[] response(long id, byte status, String body) {
+        byte[] bytes = (body != null ? body.getBytes(StandardCharsets.UTF_8) : null);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 1 + sizeOf(bytes));
+        buffer.putLong(id);
+        buffer.put(status);
+        putBytes(buffer, bytes);
+        return buffer.array();
+    }
+
+    static Type type(byte value) {
+        Type[] types = Type.values();
+        if (value < 0 || value >= types.length) {
+            throw new IllegalArgumentException("wrong type " + value);
+        }
+        return types[value];
+    }
+
+    static Version version(byte value) {
+        for (Version version : Version.values()) {
+            if (version.getValue() == value) {
+                return version;
+            }
+        }
+        throw new IllegalArgumentException("wrong version " + value);
+    }
+
+    static int sizeOf(byte[] bytes) {
+        return 4 + (bytes != null ? bytes.length : 0);
+    }
+
+    static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(0);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("wrong field length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    static String getString(ByteBuffer buffer) {
+        return new String(getBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the frame payload, or <tt>null</tt> if the channel was closed before a new frame started
+     */
+    static ByteBuffer readFrame(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (!readFully(channel, header, true)) {
+            return null;
+        }
+        int length = header.getInt(0);
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("wrong frame length " + length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, false);
+        payload.flip();
+        return payload;
+    }
+
+    /**
+     * Not thread-safe: concurrent writers to the same channel must synchronize.
+     */
+    static void writeFrame(WritableByteChannel channel, byte[] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(4 + payload.length);
+        frame.putInt(payload.length);
+        frame.put(payload);
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer, boolean eofAllowed) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (eofAllowed && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed in the middle of a frame");
+            }
+        }
+        return true;
+    }
+
+    static ServerSocketChannel openServer(String path) throws IOException {
+        try {
+            ServerSocketChannel server = (ServerSocketChannel) ServerSocketChannel.class
+                    .getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unixProtocolFamily());
+            server.bind(address(path));
+            return server;
+        } catch (ReflectiveOperationException e) {
+            throw unsupported(e);
+        }
+    }
+
+    static SocketChannel connect(String path) throws IOException {
+        return SocketChannel.open(address(path));
+    }
+
+    private static SocketAddress address(String path) {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", String.class)
+                    .invoke(null, path);
+        } catch (ReflectiveOperationException e) {
+            throw unsupported(e);
+        }
+    }
+
+    private static ProtocolFamily unixProtocolFamily() {
+        try {
+            return StandardProtocolFamily.valueOf("UNIX");
+        } catch (IllegalArgumentException e) {
+            throw unsupported(e);
+        }
+    }
+
+    private static IllegalStateException unsupported(Exception cause) {
+        return new IllegalStateException("Unix domain sockets require Java 16 or later", cause);
+    }
+}
@@ -0,0 +1,319 @@
+package com.kosprov.jargon2.examples;
+
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Runs {@link MultiThreadedHashVerifyLoop} in child JVMs, once for every combination of a declared matrix of JVM
+ * options and environment variables, and compares them.
+ *
+ * <p>
+ *     The matrix is described in a properties file (see <tt>scripts/experiment-matrix</tt>). Each dimension (e.g. GC,
+ *     heap size, glibc malloc settings) has a list of values, and every value may add JVM options and/or environment
+ *     variables to the child. Children run sequentially with the same loop arguments and, optionally, pinned to the same
+ *     set of CPUs (<tt>taskset</tt>, Linux only) with a matching <tt>-XX:ActiveProcessorCount</tt>.
+ * </p>
+ *
+ * <p>
+ *     The CSV samples of every child are kept in the output folder. The first part of the samples (see
+ *     <tt>steadyState.skip</tt>) is ignored, and the rest is summarized in one table of steady-state RSS, RSS growth, GC
+ *     overhead and throughput per configuration.
+ * </p>
+ */
+public class ExperimentMatrix {
+
+    public static void main(String[] args) throws Exception {
+
+        String matrixFile = null;
+        String outputDir = "experiment-matrix";
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("m").longOpt("matrix").hasArg(true).argName("file").desc("Matrix definition (properties file, required)").build());
+            options.addOption(Option.builder("o").longOpt("outputDir").hasArg(true).argName("dir").desc("Folder for the output of every child (default: " + outputDir + ")").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h") || !cmd.hasOption("m")) {
+                System.out.println("Runs the multi-threaded hash / verify loop in child JVMs for every combination of a matrix of JVM options and environment variables.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -cp path_to_jar " + ExperimentMatrix.class.getName() + " [options]", options);
+                System.exit(cmd.hasOption("h") ? 0 : -1);
+            }
+
+            matrixFile = cmd.getOptionValue("m");
+
+            if (cmd.hasOption("o")) {
+                outputDir = cmd.getOptionValue("o");
+            }
+        }
+        //</editor-fold>
+
+        Properties matrix = new Properties();
+        try (InputStream in = new FileInputStream(matrixFile)) {
+            matrix.load(in);
+        }
+
+        List<String> baseJvmOptions = split(matrix.getProperty("base.jvm", ""));
+        List<String> loopArgs = split(matrix.getProperty("loop.args", ""));
+        String cpus = matrix.getProperty("cpus", "").trim();
+        double skip = Double.parseDouble(matrix.getProperty("steadyState.skip", "0.25"));
+
+        if (!loopArgs.contains("--collectStats") && !loopArgs.contains("-cs")) {
+            throw new IllegalArgumentException("loop.args must include --collectStats");
+        }
+
+        List<Configuration> configurations = Configuration.expand(matrix);
+
+        File output = new File(outputDir);
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Could not create " + output);
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+
+        SimpleDateFormat sdf = new SimpleDateFormat("hh:mm:ss");
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Configuration");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Matrix:\t\t\t%s\n", matrixFile);
+        System.out.printf("Output folder:\t\t%s\n", output.getPath());
+        System.out.printf("Base JVM options:\t%s\n", String.join(" ", baseJvmOptions));
+        System.out.printf("Loop arguments:\t\t%s\n", String.join(" ", loopArgs));
+        System.out.printf("CPUs:\t\t\t%s\n", (cpus.isEmpty() ? "all" : cpus + " (" + cpuCount(cpus) + " CPUs)"));
+        System.out.printf("Steady state:\t\tskip first %.0f%% of samples\n", skip * 100);
+        System.out.printf("Configurations:\t\t%d\n", configurations.size());
+        for (Configuration configuration : configurations) {
+            System.out.printf("\t\t\t%s\n", configuration);
+        }
+        System.out.println("--------------------------------------------------");
+
+        Map<Configuration, Summary> summaries = new LinkedHashMap<>();
+
+        for (Configuration configuration : configurations) {
+            List<String> command = new ArrayList<>();
+            if (!cpus.isEmpty()) {
+                command.addAll(Arrays.asList("taskset", "-c", cpus));
+            }
+            command.add(java);
+            command.addAll(baseJvmOptions);
+            if (!cpus.isEmpty()) {
+                command.add("-XX:ActiveProcessorCount=" + cpuCount(cpus));
+            }
+            command.addAll(configuration.jvmOptions);
+            command.addAll(Arrays.asList("-cp", classpath, MultiThreadedHashVerifyLoop.class.getName()));
+            command.addAll(loopArgs);
+
+            ProcessBuilder pb = new ProcessBuilder(command).redirectErrorStream(true);
+            pb.environment().putAll(configuration.environment);
+
+            File childOutput = new File(output, configuration.name.replaceAll("[^A-Za-z0-9_.-]", "_") + ".out");
+
+            System.out.printf("[%s] Running %s (output: %s)%n", sdf.format(new Date()), configuration.name, childOutput.getPath());
+
+            Process process = pb.start();
+            process.getOutputStream().close();
+
+            List<String> csv = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(childOutput), StandardCharsets.UTF_8))) {
+                String line;
+                boolean inCsv = false;
+                while ((line = reader.readLine()) != null) {
+                    writer.println(line);
+                    if (line.startsWith("T,C,")) {
+                        inCsv = true;
+                    }
+                    if (inCsv && !line.isEmpty() && (line.startsWith("T,C,") || Character.isDigit(line.charAt(0)))) {
+                        csv.add(line);
+                    }
+                }
+            }
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                System.out.printf("[%s] %s exited with %d, see %s%n", sdf.format(new Date()), configuration.name, exitCode, childOutput.getPath());
+                continue;
+            }
+
+            summaries.put(configuration, Summary.of(csv, skip));
+        }
+
+        System.out.println();
+        System.out.printf("%-32s %8s %12s %12s %12s %10s %10s %12s%n", "Configuration", "Samples", "RSS avg (KB)", "RSS max (KB)", "RSS growth", "%CPU avg", "GC %", "ops/s");
+        for (Map.Entry<Configuration, Summary> entry : summaries.entrySet()) {
+            Summary summary = entry.getValue();
+            System.out.printf("%-32s %8d %12.0f %12.0f %12.0f %10.1f %10.2f %12.1f%n",
+                    entry.getKey().name,
+                    summary.samples,
+                    summary.rssAverage,
+                    summary.rssMax,
+                    summary.rssGrowth,
+                    summary.cpuAverage,
+                    summary.gcOverhead,
+                    summary.throughput);
+        }
+    }
+
+    private static List<String> split(String value) {
+        List<String> parts = new ArrayList<>();
+        for (String part : value.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+        }
+        return parts;
+    }
+
+    static int cpuCount(String cpus) {
+        int count = 0;
+        for (String range : cpus.split(",")) {
+            String[] bounds = range.trim().split("-");
+            if (bounds.length == 1) {
+                count++;
+            } else {
+                count += Integer.parseInt(bounds[1].trim()) - Integer.parseInt(bounds[0].trim()) + 1;
+            }
+        }
+        return count;
+    }
+
+    static class Configuration {
+        final String name;
+        final List<String> jvmOptions;
+        final Map<String, String> environment;
+
+        Configuration(String name, List<String> jvmOptions, Map<String, String> environment) {
+            this.name = name;
+            this.jvmOptions = jvmOptions;
+            this.environment = environment;
+        }
+
+        /**
+         * Cartesian product of the values of all dimensions.
+         */
+        static List<Configuration> expand(Properties matrix) {
+            List<Configuration> configurations = new ArrayList<>();
+            configurations.add(new Configuration("", new ArrayList<>(), new LinkedHashMap<>()));
+
+            for (String dimension : split(matrix.getProperty("dimensions", "").replace(',', ' '))) {
+                List<String> values = split(matrix.getProperty(dimension + ".values", "").replace(',', ' '));
+                if (values.isEmpty()) {
+                    throw new IllegalArgumentException("Dimension " + dimension + " has no values");
+                }
+
+                List<Configuration> expanded = new ArrayList<>();
+                for (Configuration configuration : configurations) {
+                    for (String value : values) {
+                        List<String> jvmOptions = new ArrayList<>(configuration.jvmOptions);
+                        jvmOptions.addAll(split(matrix.getProperty(dimension + "." + value + ".jvm", "")));
+
+                        Map<String, String> environment = new LinkedHashMap<>(configuration.environment);
+                        for (String variable : split(matrix.getProperty(dimension + "." + value + ".env", ""))) {
+                            int eq = variable.indexOf('=');
+                            if (eq <= 0) {
+                                throw new IllegalArgumentException("Wrong environment variable " + variable + " in " + dimension + "." + value);
+                            }
+                            environment.put(variable.substring(0, eq), variable.substring(eq + 1));
+                        }
+
+                        String name = configuration.name.isEmpty() ? value : configuration.name + "/" + value;
+                        expanded.add(new Configuration(name, jvmOptions, environment));
+                    }
+                }
+                configurations = expanded;
+            }
+
+            return configurations;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(name).append(":");
+            for (Map.Entry<String, String> variable : environment.entrySet()) {
+                sb.append(' ').append(variable.getKey()).append('=').append(variable.getValue());
+            }
+            for (String option : jvmOptions) {
+                sb.append(' ').append(option);
+            }
+            return sb.toString();
+        }
+    }
+
+    static class Summary {
+        int samples;
+        double rssAverage;
+        double rssMax;
+        double rssGrowth;
+        double cpuAverage;
+        double gcOverhead;
+        double throughput;
+
+        /**
+         * @param csv header and samples as printed by {@link MultiThreadedHashVerifyLoop.StatsCollector}
+         * @param skip fraction of the first samples to ignore
+         */
+        static Summary of(List<String> csv, double skip) {
+            Summary summary = new Summary();
+            if (csv.size() < 3) {
+                return summary;
+            }
+
+            List<String> header = Arrays.asList(csv.get(0).split(","));
+            int t = header.indexOf("T");
+            int c = header.indexOf("C");
+            int cpu = header.indexOf("%CPU");
+            int rss = header.indexOf("RSS");
+            int gct = header.indexOf("GCT");
+
+            // The last sample is taken after the loops have stopped and a few explicit GCs, so it's not steady state
+            List<double[]> rows = new ArrayList<>();
+            for (String line : csv.subList(1, csv.size() - 1)) {
+                String[] values = line.split(",");
+                rows.add(new double[] { value(values, t), value(values, c), value(values, cpu), value(values, rss), value(values, gct) });
+            }
+
+            List<double[]> steady = rows.subList(Math.min((int) (rows.size() * skip), rows.size() - 1), rows.size());
+            double[] first = steady.get(0);
+            double[] last = steady.get(steady.size() - 1);
+
+            summary.samples = steady.size();
+            for (double[] row : steady) {
+                summary.rssAverage += row[3] / steady.size();
+                summary.rssMax = Math.max(summary.rssMax, row[3]);
+                summary.cpuAverage += row[2] / steady.size();
+            }
+            summary.rssGrowth = last[3] - first[3];
+
+            double seconds = (last[0] - first[0]) / 1000;
+            if (seconds > 0) {
+                summary.gcOverhead = (last[4] - first[4]) / seconds * 100;
+                summary.throughput = (last[1] - first[1]) / seconds;
+            }
+
+            return summary;
+        }
+
+        private static double value(String[] values, int index) {
+            if (index < 0 || index >= values.length) {
+                return 0;
+            }
+            try {
+                return Double.parseDouble(values[index]);
+            } catch (NumberFormatException e) {
+                return 0; // jstat prints "-" for columns that don't apply to the GC in use
+            }
+        }
+    }
+}
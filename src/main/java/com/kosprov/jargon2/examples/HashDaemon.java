@@ -0,0 +1,331 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.spi.Jargon2Backend;
+import org.apache.commons.cli.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Keeps a warmed-up JVM and Jargon2 backend resident and serves hash / verify requests over a Unix domain socket
+ * (requires Java 16+).
+ *
+ * <p>
+ *     Started through the jar's main class:
+ * </p>
+ * <pre>
+ *     $ java -jar target/jargon2-examples-1.1.1.jar --daemon --socket /tmp/jargon2.sock
+ * </pre>
+ * <p>
+ *     Each connection has a reader thread that decodes requests (see {@link DaemonProtocol}) and hands them to a bounded
+ *     worker pool, so a client can keep several requests in flight over the same connection. When the pool's queue is
+ *     full, the reader executes the request itself, which stops reading from that connection until there is capacity
+ *     again.
+ * </p>
+ *
+ * <p>
+ *     Before listening, it warms up on the parameters that clients are going to send (<tt>--warmUp*</tt> options, with
+ *     the same defaults and meaning as the options of the client).
+ * </p>
+ */
+public class HashDaemon {
+
+    public static void main(String[] args) throws Exception {
+
+        String socket = null;
+        Class<? extends Jargon2Backend> backend = null; // discovered
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queueSize = 64;
+        long warmUpMaxTime = 10 * 1000;
+        // Same defaults as the command line utility and the client
+        Type warmUpType = Type.ARGON2i;
+        Version warmUpVersion = Version.V13;
+        int warmUpTimeCost = 3;
+        int warmUpMemoryCost = 1 << 12;
+        int warmUpParallelism = 1;
+        int warmUpHashLength = 32;
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("s").longOpt("socket").hasArg(true).argName("path").desc("Path of the Unix domain socket (required)").build());
+            options.addOption(Option.builder("b").longOpt("backend").hasArg(true).argName("class").desc("Class name of the Argon2 backend (default: automatic)").build());
+            options.addOption(Option.builder("w").longOpt("workers").hasArg(true).argName("N").desc("Number of worker threads (default: " + workers + ")").build());
+            options.addOption(Option.builder("q").longOpt("queueSize").hasArg(true).argName("N").desc("Number of requests waiting for a worker (default: " + queueSize + ")").build());
+            options.addOption(Option.builder("wmt").longOpt("warmUpMaxTime").hasArg(true).argName("N").desc("Maximum warm-up time in seconds, 0 for no warm-up (default: " + (warmUpMaxTime / 1000) + ")").build());
+            options.addOption(Option.builder("wty").longOpt("warmUpType").hasArg(true).argName("i|d|id").desc("Argon2 type of the warm-up (default: " + warmUpType.getValue().replace("argon2", "") + ")").build());
+            options.addOption(Option.builder("wv").longOpt("warmUpVersion").hasArg(true).argName("10|13").desc("Argon2 version of the warm-up (default: " + warmUpVersion.name().replace("V", "") + ")").build());
+            options.addOption(Option.builder("wt").longOpt("warmUpTimeCost").hasArg(true).argName("N").desc("Number of iterations of the warm-up (default: " + warmUpTimeCost + ")").build());
+            options.addOption(Option.builder("wm").longOpt("warmUpMemoryCost").hasArg(true).argName("N").desc("Memory usage of 2^N KiB of the warm-up (default: " + Integer.numberOfTrailingZeros(warmUpMemoryCost) + ")").build());
+            options.addOption(Option.builder("wp").longOpt("warmUpParallelism").hasArg(true).argName("N").desc("Parallelism of the warm-up (default: " + warmUpParallelism + ")").build());
+            options.addOption(Option.builder("wl").longOpt("warmUpHashLength").hasArg(true).argName("N").desc("Hash output length in bytes of the warm-up (default: " + warmUpHashLength + ")").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h") || !cmd.hasOption("s")) {
+                System.out.println("Serves hash / verify requests over a Unix domain socket.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -jar path_to_jar --daemon [options]", options);
+                System.exit(cmd.hasOption("h") ? 0 : -1);
+            }
+
+            socket = cmd.getOptionValue("s");
+
+            if (cmd.hasOption("b")) {
+                backend = Class.forName(cmd.getOptionValue("b")).asSubclass(Jargon2Backend.class);
+            }
+
+            if (cmd.hasOption("w")) {
+                workers = Integer.parseInt(cmd.getOptionValue("w"));
+            }
+
+            if (cmd.hasOption("q")) {
+                queueSize = Integer.parseInt(cmd.getOptionValue("q"));
+            }
+
+            if (cmd.hasOption("wmt")) {
+                warmUpMaxTime = Long.parseLong(cmd.getOptionValue("wmt")) * 1000;
+            }
+
+            if (cmd.hasOption("wty")) {
+                String val = cmd.getOptionValue("wty");
+                if ("id".equals(val)) {
+                    warmUpType = Type.ARGON2id;
+                } else if ("d".equals(val)) {
+                    warmUpType = Type.ARGON2d;
+                } else if (!"i".equals(val)) {
+                    throw new IllegalArgumentException("wrong type " + val);
+                }
+            }
+
+            if (cmd.hasOption("wv")) {
+                String val = cmd.getOptionValue("wv");
+                if ("10".equals(val)) {
+                    warmUpVersion = Version.V10;
+                } else if (!"13".equals(val)) {
+                    throw new IllegalArgumentException("wrong version " + val);
+                }
+            }
+
+            if (cmd.hasOption("wt")) {
+                warmUpTimeCost = Integer.parseInt(cmd.getOptionValue("wt"));
+            }
+
+            if (cmd.hasOption("wm")) {
+                warmUpMemoryCost = 1 << Integer.parseInt(cmd.getOptionValue("wm"));
+            }
+
+            if (cmd.hasOption("wp")) {
+                warmUpParallelism = Integer.parseInt(cmd.getOptionValue("wp"));
+            }
+
+            if (cmd.hasOption("wl")) {
+                warmUpHashLength = Integer.parseInt(cmd.getOptionValue("wl"));
+            }
+        }
+        //</editor-fold>
+
+        SimpleDateFormat sdf = new SimpleDateFormat("hh:mm:ss");
+
+        // Requests and warm-up share the backend; every request sets its own parameters
+        Hasher baseHasher = (backend != null ? jargon2Hasher().backend(backend) : jargon2Hasher());
+        Verifier baseVerifier = (backend != null ? jargon2Verifier().backend(backend) : jargon2Verifier());
+
+        if (warmUpMaxTime > 0) {
+            System.out.printf("[%s] Warming up on %s %s, m=%d KB, t=%d, p=%d, %d bytes%n", sdf.format(new Date()),
+                    warmUpType.getValueCapitalized(), warmUpVersion.name().toLowerCase(), warmUpMemoryCost, warmUpTimeCost, warmUpParallelism, warmUpHashLength);
+            Hasher hasher = baseHasher.type(warmUpType).version(warmUpVersion).timeCost(warmUpTimeCost).memoryCost(warmUpMemoryCost).parallelism(warmUpParallelism).hashLength(warmUpHashLength);
+            Random r = new Random();
+            WarmUp.Result result = new WarmUp(20, 0.05, warmUpMaxTime).run(() -> {
+                byte[] salt = new byte[16];
+                byte[] password = new byte[16];
+                r.nextBytes(salt);
+                r.nextBytes(password);
+                if (!baseVerifier.hash(hasher.salt(salt).password(password).encodedHash()).password(password).verifyEncoded()) {
+                    throw new IllegalStateException("Could not verify");
+                }
+            });
+            System.out.printf("[%s] Warm-up: %s%n", sdf.format(new Date()), result);
+        }
+
+        AtomicInteger workerCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                workers,
+                workers,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("HashDaemon-worker-" + workerCounter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        Files.deleteIfExists(Paths.get(socket));
+        ServerSocketChannel server = DaemonProtocol.openServer(socket);
+
+        final String socketPath = socket;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            executor.shutdownNow();
+            try {
+                server.close();
+                Files.deleteIfExists(Paths.get(socketPath));
+            } catch (IOException e) {
+                // exiting anyway
+            }
+        }));
+
+        System.out.printf("[%s] Pid: %s. Listening on %s with %d workers (queue: %d)%n",
+                sdf.format(new Date()), MultiThreadedHashVerifyLoop.getProcessId(), socket, workers, queueSize);
+
+        int connectionCounter = 0;
+        while (server.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                if (server.isOpen()) {
+                    throw e;
+                }
+                break;
+            }
+            Thread connectionThread = new Thread(new Connection(channel, executor, baseHasher, baseVerifier));
+            connectionThread.setName("HashDaemon-connection-" + connectionCounter++);
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    static class Connection implements Runnable {
+        private final SocketChannel channel;
+        private final ThreadPoolExecutor executor;
+        private final Hasher hasher;
+        private final Verifier verifier;
+        private final Object writeLock = new Object();
+
+        Connection(SocketChannel channel, ThreadPoolExecutor executor, Hasher hasher, Verifier verifier) {
+            this.channel = channel;
+            this.executor = executor;
+            this.hasher = hasher;
+            this.verifier = verifier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ByteBuffer frame;
+                while ((frame = DaemonProtocol.readFrame(channel)) != null) {
+                    Request request = Request.decode(frame);
+                    executor.execute(() -> reply(request.id, request.execute(hasher, verifier)));
+                }
+            } catch (Exception e) {
+                if (channel.isOpen()) {
+                    e.printStackTrace();
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void reply(long id, byte[] response) {
+            synchronized (writeLock) {
+                try {
+                    DaemonProtocol.writeFrame(channel, response);
+                } catch (IOException e) {
+                    close(); // client has gone away
+                }
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    static class Request {
+        long id;
+        byte op;
+        Type type;
+        Version version;
+        int memoryCost;
+        int timeCost;
+        int parallelism;
+        int hashLength;
+        byte[] salt;
+        String encodedHash;
+        byte[] password;
+        byte[] ad;
+
+        static Request decode(ByteBuffer frame) {
+            Request request = new Request();
+            request.id = frame.getLong();
+            request.op = frame.get();
+            if (request.op == DaemonProtocol.OP_HASH) {
+                request.type = DaemonProtocol.type(frame.get());
+                request.version = DaemonProtocol.version(frame.get());
+                request.memoryCost = frame.getInt();
+                request.timeCost = frame.getInt();
+                request.parallelism = frame.getInt();
+                request.hashLength = frame.getInt();
+                request.salt = DaemonProtocol.getBytes(frame);
+            } else if (request.op == DaemonProtocol.OP_VERIFY) {
+                request.encodedHash = DaemonProtocol.getString(frame);
+            } else {
+                throw new IllegalArgumentException("wrong operation " + request.op);
+            }
+            request.password = DaemonProtocol.getBytes(frame);
+            request.ad = DaemonProtocol.getBytes(frame);
+            return request;
+        }
+
+        byte[] execute(Hasher hasher, Verifier verifier) {
+            try {
+                if (op == DaemonProtocol.OP_HASH) {
+                    String hash = hasher
+                            .type(type)
+                            .version(version)
+                            .memoryCost(memoryCost)
+                            .timeCost(timeCost)
+                            .parallelism(parallelism)
+                            .hashLength(hashLength)
+                            .salt(salt)
+                            .password(password)
+                            .ad(ad)
+                            .encodedHash();
+                    return DaemonProtocol.response(id, DaemonProtocol.STATUS_OK, hash);
+                } else {
+                    boolean match = verifier
+                            .hash(encodedHash)
+                            .password(password)
+                            .ad(ad)
+                            .verifyEncoded();
+                    return DaemonProtocol.response(id, (match ? DaemonProtocol.STATUS_OK : DaemonProtocol.STATUS_MISMATCH), null);
+                }
+            } catch (Exception e) {
+                return DaemonProtocol.response(id, DaemonProtocol.STATUS_ERROR, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+}
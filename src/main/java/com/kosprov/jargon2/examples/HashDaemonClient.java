@@ -0,0 +1,222 @@
+package com.kosprov.jargon2.examples;
+
+import org.apache.commons.cli.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Thin client of {@link HashDaemon}. It takes the same Argon2 options as {@link CommandLineUtility}, reads the password
+ * from standard input and sends one or more hash requests, followed by a verification of the first hash.
+ *
+ * <p>
+ *     Usage:
+ * </p>
+ * <pre>
+ *     $ echo -n "password" | java -jar target/jargon2-examples-1.1.1.jar --client --socket /tmp/jargon2.sock somesalt -t 2 -m 16 -p 4 -l 24
+ * </pre>
+ * <p>
+ *     With <tt>-n</tt> and <tt>-k</tt>, it pipelines N requests over the same connection, keeping up to K of them in flight,
+ *     and reports the latency of every request and a summary.
+ * </p>
+ */
+public class HashDaemonClient {
+
+    public static void main(String[] args) throws Exception {
+
+        String socket = null;
+        int requests = 1;
+        int inFlight = 1;
+        boolean quiet = false;
+        Type type = Type.ARGON2i;
+        Version version = Version.V13;
+        int timeCost = 3;
+        int memoryCost = 1 << 12;
+        int parallelism = 1;
+        int hashLength = 32;
+        String salt = null;
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("s").longOpt("socket").hasArg(true).argName("path").desc("Path of the daemon's Unix domain socket (required)").build());
+            options.addOption(Option.builder("n").hasArg(true).argName("N").desc("Sends N hash requests (default 1)").build());
+            options.addOption(Option.builder("k").hasArg(true).argName("N").desc("Keeps up to N requests in flight (default 1)").build());
+            options.addOption("q", "Do not print the latency of every request");
+            options.addOption("i", "Use Argon2i (this is the default)");
+            options.addOption("d", "Use Argon2d instead of Argon2i");
+            options.addOption("id", "Use Argon2id instead of Argon2i");
+            options.addOption(Option.builder("t").hasArg(true).argName("N").desc("Sets the number of iterations to N (default = 3)").build());
+            options.addOption(Option.builder("m").hasArg(true).argName("N").desc("Sets the memory usage of 2^N KiB (default 12)").build());
+            options.addOption(Option.builder("p").hasArg(true).argName("N").desc("Sets parallelism to N threads (default 1)").build());
+            options.addOption(Option.builder("l").hasArg(true).argName("N").desc("Sets hash output length to N bytes (default 32)").build());
+            options.addOption(Option.builder("v").hasArg(true).argName("10|13").desc("Argon2 version (defaults to the most recent version, currently 13)").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h") || !cmd.hasOption("s") || cmd.getArgs().length != 1) {
+                System.out.println("Sends hash / verify requests to a hash daemon.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -jar path_to_jar --client salt [options]", options);
+                System.exit(cmd.hasOption("h") ? 0 : -1);
+            }
+
+            socket = cmd.getOptionValue("s");
+            salt = cmd.getArgs()[0];
+
+            if (cmd.hasOption("n")) {
+                requests = Integer.parseInt(cmd.getOptionValue("n"));
+                if (requests < 1) {
+                    throw new IllegalArgumentException("-n must be at least 1, the first hash is verified");
+                }
+            }
+
+            if (cmd.hasOption("k")) {
+                inFlight = Integer.parseInt(cmd.getOptionValue("k"));
+                if (inFlight < 1) {
+                    throw new IllegalArgumentException("-k must be at least 1");
+                }
+            }
+
+            if (cmd.hasOption("q")) {
+                quiet = true;
+            }
+
+            if (cmd.hasOption("id")) {
+                type = Type.ARGON2id;
+            } else if (cmd.hasOption("d")) {
+                type = Type.ARGON2d;
+            }
+
+            if (cmd.hasOption("v")) {
+                String val = cmd.getOptionValue("v");
+                if ("10".equals(val)) {
+                    version = Version.V10;
+                } else if (!"13".equals(val)) {
+                    throw new IllegalArgumentException("wrong version " + val);
+                }
+            }
+
+            if (cmd.hasOption("t")) {
+                timeCost = Integer.parseInt(cmd.getOptionValue("t"));
+            }
+
+            if (cmd.hasOption("m")) {
+                memoryCost = 1 << Integer.parseInt(cmd.getOptionValue("m"));
+            }
+
+            if (cmd.hasOption("p")) {
+                parallelism = Integer.parseInt(cmd.getOptionValue("p"));
+            }
+
+            if (cmd.hasOption("l")) {
+                hashLength = Integer.parseInt(cmd.getOptionValue("l"));
+            }
+        }
+        //</editor-fold>
+
+        byte[] saltBytes = salt.getBytes(StandardCharsets.UTF_8);
+        byte[] password = readAll(System.in);
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        Map<Long, Long> pending = new ConcurrentHashMap<>();
+        Semaphore window = new Semaphore(inFlight);
+        CountDownLatch completed = new CountDownLatch(requests);
+        AtomicReference<String> firstHash = new AtomicReference<>();
+        final boolean printEach = !quiet;
+        final int total = requests;
+
+        try (SocketChannel channel = DaemonProtocol.connect(socket)) {
+
+            Thread receiver = new Thread(() -> {
+                try {
+                    for (int i = 0; i < total; i++) {
+                        ByteBuffer frame = DaemonProtocol.readFrame(channel);
+                        if (frame == null) {
+                            throw new IllegalStateException("Daemon closed the connection");
+                        }
+                        long received = System.nanoTime();
+                        long id = frame.getLong();
+                        byte status = frame.get();
+                        String body = DaemonProtocol.getString(frame);
+                        long elapsed = received - pending.remove(id);
+                        window.release();
+
+                        if (status != DaemonProtocol.STATUS_OK) {
+                            throw new IllegalStateException("Request " + id + " failed: " + body);
+                        }
+
+                        latencies.record(elapsed);
+                        firstHash.compareAndSet(null, body);
+                        if (printEach) {
+                            System.out.printf("Request %d:\t%.3f ms\n", id, elapsed / 1e6);
+                        }
+                        completed.countDown();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    System.exit(-1);
+                }
+            });
+            receiver.setName("HashDaemonClient-receiver");
+            receiver.setDaemon(true);
+            receiver.start();
+
+            long start = System.nanoTime();
+            for (long id = 0; id < requests; id++) {
+                window.acquire();
+                byte[] request = DaemonProtocol.hashRequest(id, type, version, memoryCost, timeCost, parallelism, hashLength, saltBytes, password, null);
+                pending.put(id, System.nanoTime());
+                DaemonProtocol.writeFrame(channel, request);
+            }
+            completed.await();
+            long elapsed = System.nanoTime() - start;
+
+            System.out.println("Encoded:\t" + firstHash.get());
+            System.out.printf("Requests:\t%d (%d in flight)\n", requests, inFlight);
+            System.out.printf("Throughput:\t%.1f hashes/s\n", requests / (elapsed / 1e9));
+            System.out.printf("Latency:\tavg %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms\n",
+                    latencies.mean() / 1e6, latencies.percentile(50) / 1e6, latencies.percentile(99) / 1e6, latencies.max() / 1e6);
+
+            // The receiver has finished; verify synchronously on the same connection
+            long verifyStart = System.nanoTime();
+            DaemonProtocol.writeFrame(channel, DaemonProtocol.verifyRequest(requests, firstHash.get(), password, null));
+            ByteBuffer frame = DaemonProtocol.readFrame(channel);
+            long verifyElapsed = System.nanoTime() - verifyStart;
+            if (frame == null) {
+                throw new IllegalStateException("Daemon closed the connection");
+            }
+            frame.getLong();
+            byte status = frame.get();
+            if (status == DaemonProtocol.STATUS_OK) {
+                System.out.printf("Verification ok (%.3f ms)\n", verifyElapsed / 1e6);
+            } else {
+                throw new RuntimeException("Verification failed: " + DaemonProtocol.getString(frame));
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
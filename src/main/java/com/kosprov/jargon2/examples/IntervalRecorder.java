@@ -0,0 +1,52 @@
+package com.kosprov.jargon2.examples;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records latencies from any number of threads and hands over one complete {@link LatencyHistogram} per interval to a
+ * single reader, the same way HdrHistogram's {@code Recorder} does.
+ *
+ * <p>
+ *     Recording stays lock-free: each {@link #record(long)} is bracketed by an increment of a start counter and of the
+ *     end counter of the phase it started in. {@link #intervalHistogram()} swaps in a fresh histogram, flips the phase
+ *     and waits until every writer that started in the old phase has finished, so the returned histogram is never
+ *     written to again and no sample is lost or torn between two intervals.
+ * </p>
+ */
+class IntervalRecorder {
+
+    private final AtomicLong startEpoch = new AtomicLong();
+    private final AtomicLong evenEndEpoch = new AtomicLong();
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    private volatile LatencyHistogram active = new LatencyHistogram();
+
+    void record(long nanos) {
+        long epoch = startEpoch.getAndIncrement();
+        try {
+            active.record(nanos);
+        } finally {
+            (epoch < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+        }
+    }
+
+    /**
+     * @return the values recorded since the previous call (or since creation), after all writers have left it
+     */
+    synchronized LatencyHistogram intervalHistogram() {
+        LatencyHistogram interval = active;
+        active = new LatencyHistogram();
+
+        // The phase is odd while the start counter is negative. Reset the end counter of the next phase, then move the
+        // writers over to it and wait for the ones still in the old phase.
+        boolean nextPhaseIsEven = startEpoch.get() < 0;
+        long nextPhaseStart = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(nextPhaseStart);
+        long oldPhaseStarted = startEpoch.getAndSet(nextPhaseStart);
+        AtomicLong oldPhaseEnded = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (oldPhaseEnded.get() != oldPhaseStarted) {
+            Thread.yield();
+        }
+        return interval;
+    }
+}
@@ -0,0 +1,154 @@
+package com.kosprov.jargon2.examples;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, log-linear latency histogram (in nanoseconds).
+ *
+ * <p>
+ *     Every power of two is split in 16 linear sub-buckets, so any recorded value is reported with an error of at
+ *     most ~6%. That's more than enough for comparing Argon2 latencies, which are in the millisecond range, while
+ *     keeping recording cheap enough to be called from every hash / verify loop iteration.
+ * </p>
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(index(nanos));
+        total.incrementAndGet();
+        sum.addAndGet(nanos);
+        long currentMax;
+        while (nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos)) {
+            // retry
+        }
+    }
+
+    long count() {
+        return total.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile a value in (0, 100]
+     * @return the (approximate) latency in nanoseconds below which the given percentile of the recorded values lie
+     */
+    long percentile(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(midpoint(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        total.addAndGet(other.total.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long currentMax;
+        while (otherMax > (currentMax = max.get()) && !max.compareAndSet(currentMax, otherMax)) {
+            // retry
+        }
+    }
+
+    /**
+     * Writes the histogram in a compact form (only non-empty buckets), to be read back by {@link #readFrom(DataInput)}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        long[] snapshot = new long[BUCKETS]; // recording may still be in progress
+        int nonEmpty = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            if (snapshot[i] != 0) {
+                nonEmpty++;
+            }
+        }
+        out.writeLong(total.get());
+        out.writeLong(sum.get());
+        out.writeLong(max.get());
+        out.writeInt(nonEmpty);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (snapshot[i] != 0) {
+                out.writeShort(i);
+                out.writeLong(snapshot[i]);
+            }
+        }
+    }
+
+    static LatencyHistogram readFrom(DataInput in) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.total.set(in.readLong());
+        histogram.sum.set(in.readLong());
+        histogram.max.set(in.readLong());
+        int nonEmpty = in.readInt();
+        for (int i = 0; i < nonEmpty; i++) {
+            int index = in.readShort();
+            if (index < 0 || index >= BUCKETS) {
+                throw new IOException("wrong bucket " + index);
+            }
+            histogram.counts.set(index, in.readLong());
+        }
+        return histogram;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static long midpoint(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return lowerBound(index) + ((1L << (exponent - SUB_BUCKET_BITS)) >>> 1);
+    }
+}
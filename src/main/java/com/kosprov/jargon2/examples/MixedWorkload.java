@@ -0,0 +1,399 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.spi.Jargon2Backend;
+import org.apache.commons.cli.*;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Runs several Argon2 parameter sets (profiles) concurrently in the same process and reports latency per profile.
+ *
+ * <p>
+ *     The workload is described in a properties file (see <tt>scripts/mixed-workload</tt>). Every profile has a weight,
+ *     which is the relative probability of picking it on each iteration, and a hash ratio, which is the fraction of its
+ *     operations that are hashes (the rest are verifications of pre-computed hashes).
+ * </p>
+ *
+ * <p>
+ *     With <tt>--soloRuntime</tt>, each profile first runs alone with the same number of Java threads. The final report
+ *     then compares solo and mixed latencies, which shows how much a profile is slowed down by the others (e.g. a
+ *     large-memory profile competing for memory bandwidth and cache with a small one).
+ * </p>
+ */
+public class MixedWorkload {
+
+    public static void main(String[] args) throws Exception {
+
+        String workloadFile = null;
+        Class<? extends Jargon2Backend> backend = null; // discovered
+        long runtime = 60 * 1000;
+        long soloRuntime = 0;
+        int javaThreads = 4;
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("w").longOpt("workload").hasArg(true).argName("file").desc("Workload definition (properties file, required)").build());
+            options.addOption(Option.builder("b").longOpt("backend").hasArg(true).argName("class").desc("Class name of the Argon2 backend (default: automatic)").build());
+            options.addOption(Option.builder("rt").longOpt("runtime").hasArg(true).argName("N").desc("Run the mixed workload for N seconds (default: " + (runtime / 1000) + ")").build());
+            options.addOption(Option.builder("srt").longOpt("soloRuntime").hasArg(true).argName("N").desc("Run each profile alone for N seconds before the mixed workload (default: " + (soloRuntime / 1000) + ", no solo runs)").build());
+            options.addOption(Option.builder("jt").longOpt("javaThreads").hasArg(true).argName("N").desc("Number of Java threads (default: " + javaThreads + ")").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h") || !cmd.hasOption("w")) {
+                System.out.println("Runs several Argon2 parameter sets concurrently and reports latency per profile.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -cp path_to_jar " + MixedWorkload.class.getName() + " [options]", options);
+                System.exit(cmd.hasOption("h") ? 0 : -1);
+            }
+
+            workloadFile = cmd.getOptionValue("w");
+
+            if (cmd.hasOption("b")) {
+                backend = Class.forName(cmd.getOptionValue("b")).asSubclass(Jargon2Backend.class);
+            }
+
+            if (cmd.hasOption("rt")) {
+                runtime = Long.parseLong(cmd.getOptionValue("rt")) * 1000;
+            }
+
+            if (cmd.hasOption("srt")) {
+                soloRuntime = Long.parseLong(cmd.getOptionValue("srt")) * 1000;
+            }
+
+            if (cmd.hasOption("jt")) {
+                javaThreads = Integer.parseInt(cmd.getOptionValue("jt"));
+            }
+        }
+        //</editor-fold>
+
+        Properties workload = new Properties();
+        try (InputStream in = new FileInputStream(workloadFile)) {
+            workload.load(in);
+        }
+
+        List<Profile> profiles = Profile.load(workload, backend);
+
+        SimpleDateFormat sdf = new SimpleDateFormat("hh:mm:ss");
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Configuration");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Workload:\t\t%s\n", workloadFile);
+        System.out.printf("Backend:\t\t%s\n", (backend != null ? backend.getName() : "automatic"));
+        System.out.printf("Runtime:\t\t%d seconds\n", runtime / 1000);
+        System.out.printf("Solo runtime:\t\t%s\n", (soloRuntime > 0 ? (soloRuntime / 1000) + " seconds per profile" : "no"));
+        System.out.printf("Java threads:\t\t%d\n", javaThreads);
+        for (Profile profile : profiles) {
+            System.out.printf("Profile:\t\t%s\n", profile);
+        }
+        System.out.println("--------------------------------------------------");
+
+        Map<Profile, ProfileStats> solo = new LinkedHashMap<>();
+        if (soloRuntime > 0) {
+            for (Profile profile : profiles) {
+                System.out.printf("[%s] Running profile %s alone...%n", sdf.format(new Date()), profile.name);
+                solo.putAll(runPhase(Collections.singletonList(profile), javaThreads, soloRuntime));
+            }
+        }
+
+        System.out.printf("[%s] Running mixed workload...%n", sdf.format(new Date()));
+        Map<Profile, ProfileStats> mixed = runPhase(profiles, javaThreads, runtime);
+
+        System.out.println();
+        System.out.printf("%-12s %-6s %10s %10s %10s %10s %10s %10s %10s%n", "Profile", "Op", "Count", "ops/s", "avg (ms)", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)");
+        for (Profile profile : profiles) {
+            ProfileStats stats = mixed.get(profile);
+            printRow(profile.name, "hash", stats.hash, runtime);
+            printRow(profile.name, "verify", stats.verify, runtime);
+        }
+
+        if (!solo.isEmpty()) {
+            System.out.println();
+            System.out.println("Slowdown of mixed vs solo (mixed / solo latency):");
+            System.out.printf("%-12s %-6s %10s %10s %10s %10s%n", "Profile", "Op", "p50 solo", "p50 mixed", "p99 solo", "p99 mixed");
+            for (Profile profile : profiles) {
+                printSlowdown(profile.name, "hash", solo.get(profile).hash, mixed.get(profile).hash);
+                printSlowdown(profile.name, "verify", solo.get(profile).verify, mixed.get(profile).verify);
+            }
+        }
+    }
+
+    private static Map<Profile, ProfileStats> runPhase(List<Profile> profiles, int javaThreads, long runtime) throws Exception {
+        Map<Profile, ProfileStats> stats = new LinkedHashMap<>();
+        for (Profile profile : profiles) {
+            stats.put(profile, new ProfileStats());
+        }
+
+        CountDownLatch completionLatch = new CountDownLatch(javaThreads);
+        Worker[] workers = new Worker[javaThreads];
+        for (int i = 0; i < javaThreads; i++) {
+            workers[i] = new Worker(profiles, stats, completionLatch);
+            Thread thread = new Thread(workers[i]);
+            thread.setName("MixedWorkload-" + i);
+            thread.start();
+        }
+
+        Thread.sleep(runtime);
+
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+
+        completionLatch.await();
+
+        return stats;
+    }
+
+    private static void printRow(String profile, String op, LatencyHistogram histogram, long runtime) {
+        System.out.printf("%-12s %-6s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                profile,
+                op,
+                histogram.count(),
+                histogram.count() * 1000.0 / runtime,
+                toMillis(histogram.mean()),
+                toMillis(histogram.percentile(50)),
+                toMillis(histogram.percentile(90)),
+                toMillis(histogram.percentile(99)),
+                toMillis(histogram.max()));
+    }
+
+    private static void printSlowdown(String profile, String op, LatencyHistogram solo, LatencyHistogram mixed) {
+        if (solo.count() == 0 || mixed.count() == 0) {
+            System.out.printf("%-12s %-6s %10s%n", profile, op, "n/a");
+            return;
+        }
+        long soloP50 = solo.percentile(50);
+        long soloP99 = solo.percentile(99);
+        long mixedP50 = mixed.percentile(50);
+        long mixedP99 = mixed.percentile(99);
+        System.out.printf("%-12s %-6s %8.2fms %8.2fms %8.2fms %8.2fms   (p50 x%.2f, p99 x%.2f)%n",
+                profile,
+                op,
+                toMillis(soloP50),
+                toMillis(mixedP50),
+                toMillis(soloP99),
+                toMillis(mixedP99),
+                (double) mixedP50 / Math.max(1, soloP50),
+                (double) mixedP99 / Math.max(1, soloP99));
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / (1000 * 1000);
+    }
+
+    static class Profile {
+        private static final int VERIFY_INPUTS = 16;
+
+        final String name;
+        final double weight;
+        final double hashRatio;
+        final Type type;
+        final Version version;
+        final int memoryCost;
+        final int timeCost;
+        final int parallelism;
+        final int hashLength;
+        final int saltLength;
+        final int passwordLength;
+        final int adLength;
+        final Hasher hasher;
+        final Verifier verifier;
+        final VerifyInput[] verifyInputs;
+
+        Profile(String name, Properties p, Class<? extends Jargon2Backend> backend) {
+            this.name = name;
+            this.weight = Double.parseDouble(p.getProperty(name + ".weight", "1"));
+            this.hashRatio = Double.parseDouble(p.getProperty(name + ".hashRatio", "0.5"));
+            this.type = parseType(p.getProperty(name + ".type", "id"));
+            this.version = parseVersion(p.getProperty(name + ".version", "13"));
+            this.memoryCost = Integer.parseInt(p.getProperty(name + ".memoryCost", "4096"));
+            this.timeCost = Integer.parseInt(p.getProperty(name + ".timeCost", "2"));
+            this.parallelism = Integer.parseInt(p.getProperty(name + ".parallelism", "1"));
+            this.hashLength = Integer.parseInt(p.getProperty(name + ".hashLength", "16"));
+            this.saltLength = Integer.parseInt(p.getProperty(name + ".saltLength", "16"));
+            this.passwordLength = Integer.parseInt(p.getProperty(name + ".passwordLength", "32"));
+            this.adLength = Integer.parseInt(p.getProperty(name + ".adLength", "0"));
+            int secretLength = Integer.parseInt(p.getProperty(name + ".secretLength", "0"));
+
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Profile " + name + ": weight must be positive");
+            }
+            if (hashRatio < 0 || hashRatio > 1) {
+                throw new IllegalArgumentException("Profile " + name + ": hashRatio must be between 0 and 1");
+            }
+
+            Random r = new Random();
+
+            byte[] secret = null;
+            if (secretLength > 0) {
+                secret = new byte[secretLength];
+                r.nextBytes(secret);
+            }
+
+            this.hasher = (backend != null ? jargon2Hasher().backend(backend) : jargon2Hasher())
+                    .type(type)
+                    .version(version)
+                    .memoryCost(memoryCost)
+                    .timeCost(timeCost)
+                    .parallelism(parallelism)
+                    .hashLength(hashLength)
+                    .secret(secret);
+
+            this.verifier = (backend != null ? jargon2Verifier().backend(backend) : jargon2Verifier())
+                    .secret(secret);
+
+            // Verifications run against a small pool of pre-computed hashes, so that they don't need a hash first
+            this.verifyInputs = new VerifyInput[VERIFY_INPUTS];
+            for (int i = 0; i < VERIFY_INPUTS; i++) {
+                byte[] ad = randomBytes(r, adLength);
+                byte[] password = randomBytes(r, passwordLength);
+                String hash = hasher.ad(ad).salt(randomBytes(r, saltLength)).password(password).encodedHash();
+                verifyInputs[i] = new VerifyInput(hash, ad, password);
+            }
+        }
+
+        static List<Profile> load(Properties workload, Class<? extends Jargon2Backend> backend) {
+            String names = workload.getProperty("profiles");
+            if (names == null || names.trim().isEmpty()) {
+                throw new IllegalArgumentException("Workload has no profiles");
+            }
+            List<Profile> profiles = new ArrayList<>();
+            for (String name : names.split(",")) {
+                profiles.add(new Profile(name.trim(), workload, backend));
+            }
+            return profiles;
+        }
+
+        private static Type parseType(String val) {
+            if ("i".equals(val)) {
+                return Type.ARGON2i;
+            } else if ("d".equals(val)) {
+                return Type.ARGON2d;
+            } else if ("id".equals(val)) {
+                return Type.ARGON2id;
+            }
+            throw new IllegalArgumentException("wrong type " + val);
+        }
+
+        private static Version parseVersion(String val) {
+            if ("10".equals(val)) {
+                return Version.V10;
+            } else if ("13".equals(val)) {
+                return Version.V13;
+            }
+            throw new IllegalArgumentException("wrong version " + val);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{weight=%s, hashRatio=%s, type=%s, version=%s, memoryCost=%d, timeCost=%d, parallelism=%d, hashLength=%d, saltLength=%d, passwordLength=%d, adLength=%d}",
+                    name, weight, hashRatio, type.getValueCapitalized(), version.name().toLowerCase(), memoryCost, timeCost, parallelism, hashLength, saltLength, passwordLength, adLength);
+        }
+    }
+
+    static class VerifyInput {
+        final String hash;
+        final byte[] ad;
+        final byte[] password;
+
+        VerifyInput(String hash, byte[] ad, byte[] password) {
+            this.hash = hash;
+            this.ad = ad;
+            this.password = password;
+        }
+    }
+
+    static class ProfileStats {
+        final LatencyHistogram hash = new LatencyHistogram();
+        final LatencyHistogram verify = new LatencyHistogram();
+    }
+
+    static class Worker implements Runnable {
+        private List<Profile> profiles;
+        private Map<Profile, ProfileStats> stats;
+        private CountDownLatch latch;
+        private double[] cumulativeWeights;
+        private volatile boolean active = true;
+        private Random r = new Random();
+
+        Worker(List<Profile> profiles, Map<Profile, ProfileStats> stats, CountDownLatch latch) {
+            this.profiles = profiles;
+            this.stats = stats;
+            this.latch = latch;
+            this.cumulativeWeights = new double[profiles.size()];
+            double total = 0;
+            for (int i = 0; i < profiles.size(); i++) {
+                total += profiles.get(i).weight;
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (active) {
+                    Profile profile = pick();
+                    ProfileStats profileStats = stats.get(profile);
+
+                    if (r.nextDouble() < profile.hashRatio) {
+                        byte[] ad = randomBytes(r, profile.adLength);
+                        byte[] salt = randomBytes(r, profile.saltLength);
+                        byte[] password = randomBytes(r, profile.passwordLength);
+
+                        long start = System.nanoTime();
+                        profile.hasher.ad(ad).salt(salt).password(password).encodedHash();
+                        profileStats.hash.record(System.nanoTime() - start);
+                    } else {
+                        VerifyInput input = profile.verifyInputs[r.nextInt(profile.verifyInputs.length)];
+
+                        long start = System.nanoTime();
+                        boolean match = profile.verifier.hash(input.hash).ad(input.ad).password(input.password).verifyEncoded();
+                        profileStats.verify.record(System.nanoTime() - start);
+
+                        if (!match) {
+                            throw new IllegalStateException("Not matched");
+                        }
+                    }
+                }
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        private Profile pick() {
+            double value = r.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return profiles.get(i);
+                }
+            }
+            return profiles.get(profiles.size() - 1);
+        }
+
+        void stop() {
+            active = false;
+        }
+    }
+
+    private static byte[] randomBytes(Random r, int length) {
+        if (length > 0) {
+            byte[] bytes = new byte[length];
+            r.nextBytes(bytes);
+            return bytes;
+        } else {
+            return null;
+        }
+    }
+}
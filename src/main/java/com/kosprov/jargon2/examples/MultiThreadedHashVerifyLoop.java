@@ -7,12 +7,17 @@ import org.apache.commons.cli.*;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.CountDownLatch;
+import java.util.ServiceLoader;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.kosprov.jargon2.api.Jargon2.*;
 
@@ -23,9 +28,27 @@ import static com.kosprov.jargon2.api.Jargon2.*;
  *     On Unix systems, it is able to collect process and JVM memory statistics (semi-accurately) to spot
  *     possible memory leaks. Folder <tt>scripts/long-running</tt> has examples of various executions.
  * </p>
+ *
+ * <p>
+ *     With <tt>--loginFlood</tt>, it runs an open-loop load instead: verifications (logins) at a steady rate and, after a
+ *     while, a flood of hashes (e.g. a bulk password reset), all executed through a {@link PriorityScheduler}. Every second
+ *     it prints login latency and shed / rejected requests, which shows whether login latency stays flat during the
+ *     flood (<tt>--scheduler priority</tt>) or not (<tt>--scheduler fifo</tt>).
+ * </p>
+ *
+ * <p>
+ *     With <tt>--inputs heap</tt> or <tt>--inputs direct</tt>, the hash / verify loops pass ad, salt, password and
+ *     secret as {@link ByteBuffer}s straight to {@link ByteBufferJargon2Backend#of(Jargon2Backend)} instead of
+ *     <tt>byte[]</tt>s through the {@link Hasher} / {@link Verifier} API, which doesn't take buffers. Every thread
+ *     refills the same buffers on every iteration.
+ * </p>
  */
 public class MultiThreadedHashVerifyLoop {
 
+    enum InputMode {
+        ARRAY, HEAP, DIRECT
+    }
+
     public static void main(String[] args) throws Exception {
 
         Class<? extends Jargon2Backend> backend = null; // discovered
@@ -43,6 +66,19 @@ public class MultiThreadedHashVerifyLoop {
         int memoryCost = 4 * 1024;
         int timeCost = 2;
         int parallelism = 2;
+        boolean warmUp = false;
+        int warmUpWindow = 20;
+        double warmUpCv = 0.05;
+        long warmUpMaxTime = 60 * 1000;
+        boolean loginFlood = false;
+        boolean prioritized = true;
+        int loginRate = 20;
+        int floodRate = 500;
+        long floodStart = -1; // a third of the runtime
+        long deadline = 250;
+        int reservedVerify = 1;
+        int queueCapacity = 1000;
+        InputMode inputs = InputMode.ARRAY;
 
         //<editor-fold desc="Read command-line options" defaultstate="collapsed">
         {
@@ -62,6 +98,19 @@ public class MultiThreadedHashVerifyLoop {
             options.addOption(Option.builder("mc").longOpt("memoryCost").hasArg(true).argName("N").desc("Number of KB of memory used for hash calculation (default: " + memoryCost + ")").build());
             options.addOption(Option.builder("tc").longOpt("timeCost").hasArg(true).argName("N").desc("Number of passes through memory during hash calculation (default: " + timeCost + ")").build());
             options.addOption(Option.builder("p").longOpt("parallelism").hasArg(true).argName("N").desc("Number of lanes/threads used for hash calculation (default: " + parallelism + ")").build());
+            options.addOption(Option.builder("wu").longOpt("warmUp").desc("Warm up on the benchmark parameters until latency is steady, before collecting stats (default: no warm-up)").build());
+            options.addOption(Option.builder("ww").longOpt("warmUpWindow").hasArg(true).argName("N").desc("Number of latest hash/verify pairs checked for steady state during warm-up (default: " + warmUpWindow + ")").build());
+            options.addOption(Option.builder("wcv").longOpt("warmUpCv").hasArg(true).argName("X").desc("Warm-up ends when the coefficient of variation of the window drops below X (default: " + warmUpCv + ")").build());
+            options.addOption(Option.builder("wmt").longOpt("warmUpMaxTime").hasArg(true).argName("N").desc("Maximum warm-up time in seconds (default: " + (warmUpMaxTime / 1000) + ")").build());
+            options.addOption(Option.builder("lf").longOpt("loginFlood").desc("Run logins at a steady rate and a hash flood through a scheduler, instead of the hash/verify loops").build());
+            options.addOption(Option.builder("sch").longOpt("scheduler").hasArg(true).argName("priority|fifo").desc("Scheduler of the login flood mode (default: " + (prioritized ? "priority" : "fifo") + ")").build());
+            options.addOption(Option.builder("lr").longOpt("loginRate").hasArg(true).argName("N").desc("Logins (verifications) per second in login flood mode (default: " + loginRate + ")").build());
+            options.addOption(Option.builder("fr").longOpt("floodRate").hasArg(true).argName("N").desc("Hashes per second during the flood (default: " + floodRate + ")").build());
+            options.addOption(Option.builder("fs").longOpt("floodStart").hasArg(true).argName("N").desc("Start the flood after N seconds (default: a third of the runtime)").build());
+            options.addOption(Option.builder("dl").longOpt("deadline").hasArg(true).argName("N").desc("Deadline of every request in milliseconds (default: " + deadline + ")").build());
+            options.addOption(Option.builder("rv").longOpt("reservedVerify").hasArg(true).argName("N").desc("Java threads reserved for logins by the priority scheduler (default: " + reservedVerify + ")").build());
+            options.addOption(Option.builder("in").longOpt("inputs").hasArg(true).argName("array|heap|direct").desc("Pass inputs of the hash/verify loops as byte arrays through the Hasher / Verifier API, or as heap / direct buffers through ByteBufferJargon2Backend (default: " + inputs.name().toLowerCase() + ")").build());
+            options.addOption(Option.builder("qc").longOpt("queueCapacity").hasArg(true).argName("N").desc("Maximum waiting requests per lane of the scheduler (default: " + queueCapacity + ")").build());
             options.addOption("h", "Prints this help");
 
             CommandLineParser parser = new DefaultParser();
@@ -143,6 +192,75 @@ public class MultiThreadedHashVerifyLoop {
             if (cmd.hasOption("p")) {
                 parallelism = Integer.parseInt(cmd.getOptionValue("p"));
             }
+
+            if (cmd.hasOption("wu")) {
+                warmUp = true;
+            }
+
+            if (cmd.hasOption("ww")) {
+                warmUpWindow = Integer.parseInt(cmd.getOptionValue("ww"));
+            }
+
+            if (cmd.hasOption("wcv")) {
+                warmUpCv = Double.parseDouble(cmd.getOptionValue("wcv"));
+            }
+
+            if (cmd.hasOption("wmt")) {
+                warmUpMaxTime = Long.parseLong(cmd.getOptionValue("wmt")) * 1000;
+            }
+
+            if (cmd.hasOption("lf")) {
+                loginFlood = true;
+            }
+
+            if (cmd.hasOption("sch")) {
+                String val = cmd.getOptionValue("sch");
+                if ("fifo".equals(val)) {
+                    prioritized = false;
+                } else if (!"priority".equals(val)) {
+                    throw new IllegalArgumentException("wrong scheduler " + val);
+                }
+            }
+
+            if (cmd.hasOption("lr")) {
+                loginRate = Integer.parseInt(cmd.getOptionValue("lr"));
+            }
+
+            if (cmd.hasOption("fr")) {
+                floodRate = Integer.parseInt(cmd.getOptionValue("fr"));
+            }
+
+            if (cmd.hasOption("fs")) {
+                floodStart = Long.parseLong(cmd.getOptionValue("fs")) * 1000;
+            }
+
+            if (cmd.hasOption("dl")) {
+                deadline = Long.parseLong(cmd.getOptionValue("dl"));
+            }
+
+            if (cmd.hasOption("rv")) {
+                reservedVerify = Integer.parseInt(cmd.getOptionValue("rv"));
+            }
+
+            if (cmd.hasOption("qc")) {
+                queueCapacity = Integer.parseInt(cmd.getOptionValue("qc"));
+            }
+
+            if (cmd.hasOption("in")) {
+                inputs = InputMode.valueOf(cmd.getOptionValue("in").toUpperCase());
+            }
+
+            if (loginFlood && inputs != InputMode.ARRAY) {
+                throw new IllegalArgumentException("--loginFlood only supports --inputs array");
+            }
+
+            if (loginFlood && collectStats) {
+                throw new IllegalArgumentException("--loginFlood prints its own stats and can't be combined with --collectStats");
+            }
+
+            if (floodStart < 0) {
+                floodStart = runtime / 3;
+            }
         }
         //</editor-fold>
 
@@ -165,9 +283,18 @@ public class MultiThreadedHashVerifyLoop {
         System.out.printf("Memory cost:\t\t%d KB\n", memoryCost);
         System.out.printf("Time cost:\t\t%d passes\n", timeCost);
         System.out.printf("Parallelism:\t\t%d lanes/threads\n", parallelism);
+        System.out.printf("Inputs:\t\t\t%s\n", (inputs == InputMode.ARRAY ? "byte arrays" : inputs.name().toLowerCase() + " buffers"));
+        System.out.printf("Warm-up:\t\t%s\n", (warmUp ? "window of " + warmUpWindow + ", cv < " + warmUpCv + ", max " + (warmUpMaxTime / 1000) + " seconds" : "no"));
+        if (loginFlood) {
+            System.out.printf("Scheduler:\t\t%s\n", (prioritized ? "priority (" + reservedVerify + " threads reserved for logins)" : "fifo"));
+            System.out.printf("Login rate:\t\t%d per second\n", loginRate);
+            System.out.printf("Flood:\t\t\t%d hashes per second after %d seconds\n", floodRate, floodStart / 1000);
+            System.out.printf("Deadline:\t\t%d ms\n", deadline);
+            System.out.printf("Queue capacity:\t\t%d per lane\n", queueCapacity);
+        }
         System.out.println("--------------------------------------------------");
 
-        Date completion = new Date(System.currentTimeMillis() + runtime + statsSamplingPeriod);
+        Date completion = new Date(System.currentTimeMillis() + (warmUp ? warmUpMaxTime : 0) + runtime + statsSamplingPeriod);
         System.out.printf("[%s] Pid: %s. Estimated completion before %s%n%n", sdf.format(new Date()), getProcessId(), sdf.format(completion));
 
         AtomicLong hashCounter = new AtomicLong();
@@ -180,8 +307,52 @@ public class MultiThreadedHashVerifyLoop {
             r.nextBytes(secret);
         }
 
+        Hasher hasher = (backend != null ? jargon2Hasher().backend(backend) : jargon2Hasher())
+                .type(type)
+                .version(version)
+                .memoryCost(memoryCost)
+                .timeCost(timeCost)
+                .parallelism(parallelism)
+                .hashLength(hashLength)
+                .secret(secret);
+
+        Verifier verifier = (backend != null ? jargon2Verifier().backend(backend) : jargon2Verifier())
+                .secret(secret);
+
+        Hash hash = (ad, salt, password) -> hasher.ad(ad).salt(salt).password(password).encodedHash();
+        Verify verify = (encodedHash, ad, password) -> verifier.hash(encodedHash).ad(ad).password(password).verifyEncoded();
+
+        boolean direct = (inputs == InputMode.DIRECT);
+        BufferHash bufferHash = null;
+        BufferVerify bufferVerify = null;
+        if (inputs != InputMode.ARRAY) {
+            ByteBufferJargon2Backend bufferBackend = ByteBufferJargon2Backend.of(backend != null ? newBackend(backend) : discoverBackend());
+            ByteBuffer secretBuffer = (secret != null ? HashVerifyLoop.allocate(secret.length, direct).put(secret) : null);
+            if (secretBuffer != null) {
+                secretBuffer.flip();
+            }
+            final Type t = type;
+            final Version v = version;
+            final int mc = memoryCost;
+            final int tc = timeCost;
+            final int p = parallelism;
+            final int hl = hashLength;
+            bufferHash = (ad, salt, password) -> bufferBackend.encodedHash(t, v, mc, tc, p, p, hl, secretBuffer, ad, salt, password, null);
+            bufferVerify = (encodedHash, ad, password) -> bufferBackend.verifyEncoded(encodedHash, p, secretBuffer, ad, password, null);
+        }
+
+        if (warmUp) {
+            HashVerifyLoop warmUpLoop = new HashVerifyLoop(new AtomicLong(), new CountDownLatch(1), adLength, saltLength, passwordLength, hash, verify);
+            if (bufferHash != null) {
+                warmUpLoop.useBuffers(direct, bufferHash, bufferVerify);
+            }
+            WarmUp.Result result = new WarmUp(warmUpWindow, warmUpCv, warmUpMaxTime).run(warmUpLoop::hashVerify);
+            System.out.printf("[%s] Warm-up: %s. Estimated completion before %s%n%n", sdf.format(new Date()), result, sdf.format(new Date(System.currentTimeMillis() + runtime + statsSamplingPeriod)));
+            System.gc();
+        }
+
         CountDownLatch firstStatLatch = new CountDownLatch(1);
-        CountDownLatch completionLatch = new CountDownLatch(javaThreads + 1);
+        CountDownLatch completionLatch = new CountDownLatch((loginFlood ? 0 : javaThreads) + 1);
 
         StatsCollector statsCollector = new StatsCollector(hashCounter, firstStatLatch, completionLatch, statsSamplingPeriod);
 
@@ -196,19 +367,17 @@ public class MultiThreadedHashVerifyLoop {
 
         firstStatLatch.await(); // wait for first stat to be measured before other threads execute
 
-        HashVerifyLoop[] loops = new HashVerifyLoop[javaThreads];
-
-        Hasher hasher = (backend != null ? jargon2Hasher().backend(backend) : jargon2Hasher())
-                .type(type)
-                .version(version)
-                .memoryCost(memoryCost)
-                .timeCost(timeCost)
-                .parallelism(parallelism)
-                .hashLength(hashLength)
-                .secret(secret);
+        if (loginFlood) {
+            PriorityScheduler scheduler = new PriorityScheduler(javaThreads, reservedVerify, queueCapacity, prioritized);
+            new LoginFloodLoad(hashCounter, adLength, saltLength, passwordLength, hash, verify, scheduler, loginRate, floodRate, floodStart, deadline).run(runtime);
+            scheduler.stop();
+            statsCollector.stop();
+            completionLatch.await();
+            System.out.printf("%n[%s] Executed %d hash/verify in %ds.", sdf.format(new Date()), hashCounter.get(), (runtime / 1000));
+            return;
+        }
 
-        Verifier verifier = (backend != null ? jargon2Verifier().backend(backend) : jargon2Verifier())
-                .secret(secret);
+        HashVerifyLoop[] loops = new HashVerifyLoop[javaThreads];
 
         for (int i = 0; i < javaThreads; i++) {
             loops[i] = new HashVerifyLoop(
@@ -217,9 +386,12 @@ public class MultiThreadedHashVerifyLoop {
                     adLength,
                     saltLength,
                     passwordLength,
-                    (ad, salt, password) -> hasher.ad(ad).salt(salt).password(password).encodedHash(),
-                    (hash, ad, password) -> verifier.hash(hash).ad(ad).password(password).verifyEncoded()
+                    hash,
+                    verify
             );
+            if (bufferHash != null) {
+                loops[i].useBuffers(direct, bufferHash, bufferVerify);
+            }
             Thread hashVerifyThread = new Thread(loops[i]);
             hashVerifyThread.setName("HashVerifyLoop-" + i);
             hashVerifyThread.start();
@@ -250,6 +422,16 @@ public class MultiThreadedHashVerifyLoop {
         boolean verify(String hash, byte[] ad, ByteArray password);
     }
 
+    @FunctionalInterface
+    interface BufferHash {
+        String hash(ByteBuffer ad, ByteBuffer salt, ByteBuffer password);
+    }
+
+    @FunctionalInterface
+    interface BufferVerify {
+        boolean verify(String hash, ByteBuffer ad, ByteBuffer password);
+    }
+
     static class HashVerifyLoop implements Runnable {
         private AtomicLong hashCounter;
         private CountDownLatch latch;
@@ -260,6 +442,14 @@ public class MultiThreadedHashVerifyLoop {
         private Verify verifier;
         private volatile boolean active = true;
         private Random r = new Random();
+        private IntervalRecorder hashLatencies;
+        private IntervalRecorder verifyLatencies;
+        private BufferHash bufferHasher;
+        private BufferVerify bufferVerifier;
+        private ByteBuffer adBuffer;
+        private ByteBuffer saltBuffer;
+        private ByteBuffer passwordBuffer;
+        private byte[] scratch;
 
         HashVerifyLoop(AtomicLong hashCounter, CountDownLatch latch, int adLength, int saltLength, int passwordLength, Hash hasher, Verify verifier) {
             this.hashCounter = hashCounter;
@@ -274,40 +464,321 @@ public class MultiThreadedHashVerifyLoop {
         @Override
         public void run() {
             while (active) {
-                byte[] ad = null;
-                if (adLength > 0) {
-                    ad = new byte[adLength];
-                    r.nextBytes(ad);
-                }
+                hashVerify();
+                hashCounter.addAndGet(2);
+            }
+            latch.countDown();
+        }
 
-                byte[] salt = new byte[saltLength];
-                r.nextBytes(salt);
+        void hashVerify() {
+            if (bufferHasher != null) {
+                hashVerifyBuffers();
+                return;
+            }
 
-                byte[] password = new byte[passwordLength];
-                r.nextBytes(password);
+            byte[] ad = null;
+            if (adLength > 0) {
+                ad = new byte[adLength];
+                r.nextBytes(ad);
+            }
 
-                boolean match;
+            byte[] salt = new byte[saltLength];
+            r.nextBytes(salt);
 
-                try (ByteArray passwordByteArray = toByteArray(password).clearSource()) {
+            byte[] password = new byte[passwordLength];
+            r.nextBytes(password);
 
+            boolean match;
+
+            try (ByteArray passwordByteArray = toByteArray(password).clearSource()) {
+
+                if (hashLatencies == null) {
                     String encodedHash = hasher.hash(ad, salt, passwordByteArray);
                     match = verifier.verify(encodedHash, ad, passwordByteArray);
+                } else {
+                    long start = System.nanoTime();
+                    String encodedHash = hasher.hash(ad, salt, passwordByteArray);
+                    long hashed = System.nanoTime();
+                    match = verifier.verify(encodedHash, ad, passwordByteArray);
+                    long verified = System.nanoTime();
+
+                    hashLatencies.record(hashed - start);
+                    verifyLatencies.record(verified - hashed);
+                }
+
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+
+            if (!match) {
+                throw new IllegalStateException("Not matched");
+            }
+        }
+
+        private void hashVerifyBuffers() {
+            fill(adBuffer);
+            fill(saltBuffer);
+            fill(passwordBuffer);
+
+            long start = System.nanoTime();
+            String encodedHash = bufferHasher.hash(adBuffer, saltBuffer, passwordBuffer);
+            long hashed = System.nanoTime();
+            boolean match = bufferVerifier.verify(encodedHash, adBuffer, passwordBuffer);
+            long verified = System.nanoTime();
+
+            if (hashLatencies != null) {
+                hashLatencies.record(hashed - start);
+                verifyLatencies.record(verified - hashed);
+            }
+
+            if (!match) {
+                throw new IllegalStateException("Not matched");
+            }
+        }
 
+        /**
+         * Random bytes go through a scratch array, as there is no way to generate them into a direct buffer.
+         */
+        private void fill(ByteBuffer buffer) {
+            if (buffer == null) {
+                return;
+            }
+            buffer.clear();
+            if (buffer.hasArray()) {
+                r.nextBytes(buffer.array());
+            } else {
+                r.nextBytes(scratch);
+                buffer.put(scratch, 0, buffer.capacity());
+                buffer.flip();
+            }
+        }
+
+        /**
+         * Passes inputs as buffers, allocated once and refilled on every iteration, instead of new arrays. Must be
+         * called before the loop starts.
+         */
+        HashVerifyLoop useBuffers(boolean direct, BufferHash bufferHasher, BufferVerify bufferVerifier) {
+            this.bufferHasher = bufferHasher;
+            this.bufferVerifier = bufferVerifier;
+            this.adBuffer = (adLength > 0 ? allocate(adLength, direct) : null);
+            this.saltBuffer = allocate(saltLength, direct);
+            this.passwordBuffer = allocate(passwordLength, direct);
+            this.scratch = (direct ? new byte[Math.max(adLength, Math.max(saltLength, passwordLength))] : null);
+            return this;
+        }
+
+        static ByteBuffer allocate(int capacity, boolean direct) {
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        /**
+         * Records hash and verify latencies into the given recorders (the caller takes one histogram per interval).
+         * Must be called before the loop starts.
+         */
+        HashVerifyLoop recordLatencies(IntervalRecorder hashLatencies, IntervalRecorder verifyLatencies) {
+            this.hashLatencies = hashLatencies;
+            this.verifyLatencies = verifyLatencies;
+            return this;
+        }
+
+        void stop() {
+            active = false;
+        }
+    }
+
+    static class LoginFloodLoad {
+        private static final int VERIFY_INPUTS = 16;
+
+        private AtomicLong hashCounter;
+        private int adLength;
+        private int saltLength;
+        private int passwordLength;
+        private Hash hasher;
+        private Verify verifier;
+        private PriorityScheduler scheduler;
+        private long loginPeriod;
+        private long floodPeriod;
+        private long floodStart;
+        private long deadline;
+        private byte[][][] verifyInputs; // ad, password, encoded hash
+        private volatile boolean flooding = false;
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong mismatches = new AtomicLong();
+        private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        private final IntervalRecorder intervalLogins = new IntervalRecorder();
+        private final LatencyHistogram loginsBeforeFlood = new LatencyHistogram();
+        private final LatencyHistogram loginsDuringFlood = new LatencyHistogram();
+        private final LatencyHistogram hashesDuringFlood = new LatencyHistogram();
+
+        LoginFloodLoad(AtomicLong hashCounter, int adLength, int saltLength, int passwordLength, Hash hasher, Verify verifier, PriorityScheduler scheduler, int loginRate, int floodRate, long floodStart, long deadline) {
+            this.hashCounter = hashCounter;
+            this.adLength = adLength;
+            this.saltLength = saltLength;
+            this.passwordLength = passwordLength;
+            this.hasher = hasher;
+            this.verifier = verifier;
+            this.scheduler = scheduler;
+            this.loginPeriod = TimeUnit.SECONDS.toNanos(1) / loginRate;
+            this.floodPeriod = TimeUnit.SECONDS.toNanos(1) / floodRate;
+            this.floodStart = floodStart;
+            this.deadline = TimeUnit.MILLISECONDS.toNanos(deadline);
+
+            // Logins verify against a small pool of pre-computed hashes
+            Random r = new Random();
+            this.verifyInputs = new byte[VERIFY_INPUTS][][];
+            for (int i = 0; i < VERIFY_INPUTS; i++) {
+                byte[] ad = randomBytes(r, adLength);
+                byte[] salt = randomBytes(r, saltLength);
+                byte[] password = randomBytes(r, passwordLength);
+                try (ByteArray passwordByteArray = toByteArray(password)) {
+                    String encodedHash = hasher.hash(ad, salt, passwordByteArray);
+                    verifyInputs[i] = new byte[][] { ad, password, encodedHash.getBytes(StandardCharsets.UTF_8) };
                 } catch (Exception e) {
                     throw new IllegalStateException(e);
                 }
+            }
+        }
+
+        void run(long runtime) throws InterruptedException {
+            ScheduledExecutorService generators = Executors.newScheduledThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setName("LoginFloodLoad-generator");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            long start = System.currentTimeMillis();
+
+            generators.scheduleAtFixedRate(this::login, 0, loginPeriod, TimeUnit.NANOSECONDS);
+            generators.schedule(() -> flooding = true, floodStart, TimeUnit.MILLISECONDS);
+            generators.scheduleAtFixedRate(this::hash, TimeUnit.MILLISECONDS.toNanos(floodStart), floodPeriod, TimeUnit.NANOSECONDS);
+
+            System.out.println("T,FLOOD,LOGINS,LOGIN_P50,LOGIN_P99,LOGIN_MAX,LOGIN_SHED,LOGIN_REJECTED,HASHES,HASH_SHED,HASH_REJECTED,LOGIN_QUEUE,HASH_QUEUE,FAILURES,MISMATCHES");
+
+            PriorityScheduler.LaneStats logins = scheduler.stats(PriorityScheduler.Lane.VERIFY);
+            PriorityScheduler.LaneStats hashes = scheduler.stats(PriorityScheduler.Lane.HASH);
+
+            // All counts are per interval, the queue lengths are sampled at the end of it
+            long[] previous = new long[7];
+
+            while (System.currentTimeMillis() - start < runtime) {
+                Thread.sleep(Math.min(1000, runtime - (System.currentTimeMillis() - start)));
+                LatencyHistogram interval = intervalLogins.intervalHistogram();
+                long[] current = {
+                        logins.shed.get(),
+                        logins.rejected.get(),
+                        hashes.completed.get(),
+                        hashes.shed.get(),
+                        hashes.rejected.get(),
+                        failures.get(),
+                        mismatches.get()
+                };
+                System.out.printf("%d,%d,%d,%.2f,%.2f,%.2f,%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
+                        System.currentTimeMillis() - start,
+                        (flooding ? 1 : 0),
+                        interval.count(),
+                        toMillis(interval.percentile(50)),
+                        toMillis(interval.percentile(99)),
+                        toMillis(interval.max()),
+                        current[0] - previous[0],
+                        current[1] - previous[1],
+                        current[2] - previous[2],
+                        current[3] - previous[3],
+                        current[4] - previous[4],
+                        scheduler.queued(PriorityScheduler.Lane.VERIFY),
+                        scheduler.queued(PriorityScheduler.Lane.HASH),
+                        current[5] - previous[5],
+                        current[6] - previous[6]);
+                previous = current;
+            }
+
+            generators.shutdownNow();
+
+            System.out.println();
+            System.out.printf("Logins before flood: %d, p50 %.2fms, p99 %.2fms, max %.2fms%n",
+                    loginsBeforeFlood.count(), toMillis(loginsBeforeFlood.percentile(50)), toMillis(loginsBeforeFlood.percentile(99)), toMillis(loginsBeforeFlood.max()));
+            System.out.printf("Logins during flood: %d, p50 %.2fms, p99 %.2fms, max %.2fms%n",
+                    loginsDuringFlood.count(), toMillis(loginsDuringFlood.percentile(50)), toMillis(loginsDuringFlood.percentile(99)), toMillis(loginsDuringFlood.max()));
+            System.out.printf("Hashes during flood: %d, p50 %.2fms, p99 %.2fms, max %.2fms%n",
+                    hashesDuringFlood.count(), toMillis(hashesDuringFlood.percentile(50)), toMillis(hashesDuringFlood.percentile(99)), toMillis(hashesDuringFlood.max()));
+            System.out.printf("Logins shed: %d, rejected: %d. Hashes shed: %d, rejected: %d%n",
+                    logins.shed.get(), logins.rejected.get(), hashes.shed.get(), hashes.rejected.get());
+
+            System.out.printf("Failures: %d, mismatches: %d%n", failures.get(), mismatches.get());
+
+            if (failures.get() > 0 || mismatches.get() > 0) {
+                throw new IllegalStateException("Login flood had " + failures.get() + " failures and " + mismatches.get() + " mismatches", firstFailure.get());
+            }
+        }
 
+        private void login() {
+            long submitted = System.nanoTime();
+            byte[][] input = verifyInputs[ThreadLocalRandom.current().nextInt(verifyInputs.length)];
+            scheduler.submit(PriorityScheduler.Lane.VERIFY, submitted + deadline, () -> {
+                try (ByteArray password = toByteArray(input[1])) {
+                    return verifier.verify(new String(input[2], StandardCharsets.UTF_8), input[0], password);
+                }
+            }).whenComplete((match, error) -> {
+                if (error != null) {
+                    recordFailure(error);
+                    return;
+                }
                 if (!match) {
-                    throw new IllegalStateException("Not matched");
+                    mismatches.incrementAndGet();
+                    firstFailure.compareAndSet(null, new IllegalStateException("Not matched"));
+                    return;
                 }
+                long latency = System.nanoTime() - submitted;
+                intervalLogins.record(latency);
+                (flooding ? loginsDuringFlood : loginsBeforeFlood).record(latency);
+                hashCounter.incrementAndGet();
+            });
+        }
 
-                hashCounter.addAndGet(2);
+        private void hash() {
+            long submitted = System.nanoTime();
+            Random r = ThreadLocalRandom.current();
+            byte[] ad = randomBytes(r, adLength);
+            byte[] salt = randomBytes(r, saltLength);
+            byte[] password = randomBytes(r, passwordLength);
+            scheduler.submit(PriorityScheduler.Lane.HASH, submitted + deadline, () -> {
+                try (ByteArray passwordByteArray = toByteArray(password).clearSource()) {
+                    return hasher.hash(ad, salt, passwordByteArray);
+                }
+            }).whenComplete((hash, error) -> {
+                if (error != null) {
+                    recordFailure(error);
+                } else {
+                    hashesDuringFlood.record(System.nanoTime() - submitted);
+                    hashCounter.incrementAndGet();
+                }
+            });
+        }
+
+        /**
+         * Shed and rejected requests are expected (and counted by the scheduler), anything else is a failure.
+         */
+        private void recordFailure(Throwable error) {
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+            if (cause instanceof RejectedExecutionException) {
+                return;
             }
-            latch.countDown();
+            failures.incrementAndGet();
+            firstFailure.compareAndSet(null, cause);
         }
 
-        void stop() {
-            active = false;
+        private static byte[] randomBytes(Random r, int length) {
+            if (length > 0) {
+                byte[] bytes = new byte[length];
+                r.nextBytes(bytes);
+                return bytes;
+            } else {
+                return null;
+            }
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / (1000 * 1000);
         }
     }
 
@@ -394,6 +865,22 @@ public class MultiThreadedHashVerifyLoop {
 
     }
 
+    private static Jargon2Backend newBackend(Class<? extends Jargon2Backend> backendClass) {
+        try {
+            return backendClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Could not instantiate backend " + backendClass.getName(), e);
+        }
+    }
+
+    private static Jargon2Backend discoverBackend() {
+        Iterator<Jargon2Backend> backends = ServiceLoader.load(Jargon2Backend.class).iterator();
+        if (!backends.hasNext()) {
+            throw new IllegalStateException("No Jargon2 backend found, use --backend");
+        }
+        return backends.next();
+    }
+
     static String getProcessId() {
         String name = ManagementFactory.getRuntimeMXBean().getName();
         String[] parts = name.split("@");
@@ -0,0 +1,219 @@
+package com.kosprov.jargon2.examples;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs hash and verify requests on a fixed set of worker threads, with a separate queue per lane.
+ *
+ * <p>
+ *     In prioritized mode, verifications (logins) are always taken before hashes (registrations, password changes) and
+ *     a number of workers is reserved for verifications only, so a flood of hashes can't starve logins. In FIFO mode,
+ *     both lanes share one queue in arrival order and no worker is reserved, which is how a plain thread pool behaves.
+ * </p>
+ *
+ * <p>
+ *     The asymmetry is intended: no worker is reserved for hashes, which can wait while logins keep the shared workers
+ *     busy. Logins are what users wait for and their rate is bounded by the number of users, while hashes come in bulk
+ *     (resets, migrations) and are the load to shed. To guarantee progress for hashes too, cap the login rate upstream
+ *     or use FIFO mode.
+ * </p>
+ *
+ * <p>
+ *     Every request has a deadline. When a worker picks up a request that can't complete before its deadline (based on
+ *     the average duration of the latest requests of its lane), the request is dropped instead of wasting a full Argon2
+ *     computation on an answer that nobody waits for. Requests that find their queue full are rejected immediately.
+ *     In both cases, the returned future completes with a {@link RejectedExecutionException}.
+ * </p>
+ */
+class PriorityScheduler {
+
+    enum Lane {
+        VERIFY, HASH
+    }
+
+    private final boolean prioritized;
+    private final int queueCapacity;
+    private final ArrayDeque<Task<?>> verifyQueue = new ArrayDeque<>();
+    private final ArrayDeque<Task<?>> hashQueue = new ArrayDeque<>();
+    private final int[] queued = new int[Lane.values().length]; // per lane, also in FIFO mode
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Thread[] workers;
+    private volatile boolean active = true;
+
+    final LaneStats verifyStats = new LaneStats();
+    final LaneStats hashStats = new LaneStats();
+
+    /**
+     * @param workers total number of worker threads
+     * @param reservedForVerify number of workers that only execute verifications (prioritized mode only)
+     * @param queueCapacity maximum number of waiting requests per lane
+     * @param prioritized whether to prioritize verifications, or run everything in arrival order
+     */
+    PriorityScheduler(int workers, int reservedForVerify, int queueCapacity, boolean prioritized) {
+        if (prioritized && reservedForVerify >= workers) {
+            throw new IllegalArgumentException("At least one worker must be able to execute hashes");
+        }
+        this.prioritized = prioritized;
+        this.queueCapacity = queueCapacity;
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            boolean verifyOnly = prioritized && i < reservedForVerify;
+            this.workers[i] = new Thread(() -> work(verifyOnly));
+            this.workers[i].setName("PriorityScheduler-" + (verifyOnly ? "verify-" : "shared-") + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * @param deadline {@link System#nanoTime()} after which the result is of no use
+     */
+    <T> CompletableFuture<T> submit(Lane lane, long deadline, Callable<T> callable) {
+        Task<T> task = new Task<>(lane, deadline, callable);
+        LaneStats stats = stats(lane);
+        ArrayDeque<Task<?>> queue = queue(lane);
+
+        lock.lock();
+        try {
+            if (!active) {
+                throw new RejectedExecutionException("Scheduler is stopped");
+            }
+            stats.submitted.incrementAndGet();
+            if (queued[lane.ordinal()] >= queueCapacity) {
+                stats.rejected.incrementAndGet();
+                task.future.completeExceptionally(new RejectedExecutionException(lane + " queue is full"));
+                return task.future;
+            }
+            queue.addLast(task);
+            queued[lane.ordinal()]++;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return task.future;
+    }
+
+    int queued(Lane lane) {
+        lock.lock();
+        try {
+            return queued[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the workers after their current request. Requests still queued are not executed: their futures complete
+     * with a {@link RejectedExecutionException}.
+     */
+    void stop() {
+        List<Task<?>> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            active = false;
+            dropped.addAll(verifyQueue);
+            dropped.addAll(hashQueue);
+            verifyQueue.clear();
+            hashQueue.clear();
+            Arrays.fill(queued, 0);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Task<?> task : dropped) { // outside the lock, as completion runs the callbacks of the caller
+            task.future.completeExceptionally(new RejectedExecutionException("Scheduler is stopped"));
+        }
+    }
+
+    LaneStats stats(Lane lane) {
+        return lane == Lane.VERIFY ? verifyStats : hashStats;
+    }
+
+    private ArrayDeque<Task<?>> queue(Lane lane) {
+        return (prioritized && lane == Lane.HASH) ? hashQueue : verifyQueue;
+    }
+
+    private void work(boolean verifyOnly) {
+        while (true) {
+            Task<?> task;
+
+            lock.lock();
+            try {
+                while (active && verifyQueue.isEmpty() && (verifyOnly || hashQueue.isEmpty())) {
+                    available.awaitUninterruptibly();
+                }
+                if (!active) {
+                    return;
+                }
+                task = !verifyQueue.isEmpty() ? verifyQueue.pollFirst() : hashQueue.pollFirst();
+                queued[task.lane.ordinal()]--;
+            } finally {
+                lock.unlock();
+            }
+
+            LaneStats stats = stats(task.lane);
+            long start = System.nanoTime();
+
+            if (start + stats.averageDuration() > task.deadline) {
+                stats.shed.incrementAndGet();
+                task.future.completeExceptionally(new RejectedExecutionException(task.lane + " request can't complete before its deadline"));
+                continue;
+            }
+
+            task.run();
+            stats.recordDuration(System.nanoTime() - start);
+            stats.completed.incrementAndGet();
+        }
+    }
+
+    static class LaneStats {
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong shed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        private volatile double averageDuration;
+
+        /**
+         * Exponentially weighted moving average of the latest durations (in nanoseconds).
+         */
+        long averageDuration() {
+            return (long) averageDuration;
+        }
+
+        synchronized void recordDuration(long nanos) {
+            averageDuration = (averageDuration == 0 ? nanos : 0.9 * averageDuration + 0.1 * nanos);
+        }
+    }
+
+    private static class Task<T> {
+        final Lane lane;
+        final long deadline;
+        final Callable<T> callable;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(Lane lane, long deadline, Callable<T> callable) {
+            this.lane = lane;
+            this.deadline = deadline;
+            this.callable = callable;
+        }
+
+        void run() {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
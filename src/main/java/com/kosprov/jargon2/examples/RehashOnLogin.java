@@ -0,0 +1,269 @@
+package com.kosprov.jargon2.examples;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Upgrades password hashes to the current parameter policy in the background, after successful logins.
+ *
+ * <p>
+ *     A hash can only be recomputed when the password is known, i.e. right after a successful verification. Doing it
+ *     inline adds a full (and, after raising the memory cost, more expensive) Argon2 computation to the login. Instead,
+ *     {@link #onVerified(String, String, byte[])} compares the parameters encoded in the verified hash with the policy
+ *     and, if they differ, queues the rehash to a small, bounded pool and returns immediately. The new hash is handed to
+ *     a {@link Publisher}, which stores it.
+ * </p>
+ *
+ * <p>
+ *     There is at most one pending rehash per user: logins of a user whose rehash is still queued are not queued
+ *     again. When the queue is full, the rehash is dropped; the user is upgraded at a later login. A copy of the
+ *     password is kept only while the rehash is pending and is cleared afterwards.
+ * </p>
+ */
+class RehashOnLogin {
+
+    @FunctionalInterface
+    interface Publisher {
+        /**
+         * @param oldHash the verified hash, so that the store can replace it only if it hasn't changed meanwhile
+         * @return whether the new hash was stored
+         */
+        boolean publish(String user, String oldHash, String newHash) throws Exception;
+    }
+
+    private final Hasher hasher;
+    private final Parameters policy;
+    private final int saltLength;
+    private final Publisher publisher;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final SecureRandom random = new SecureRandom();
+
+    final AtomicLong enqueued = new AtomicLong();
+    final AtomicLong upgraded = new AtomicLong();
+    final AtomicLong stale = new AtomicLong();
+    final AtomicLong deduplicated = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param hasher a hasher configured with the policy parameters (and secret, if any)
+     * @param policy the parameters of {@code hasher}, to compare verified hashes with
+     * @param saltLength number of salt bytes of new hashes
+     * @param workers number of background threads
+     * @param queueCapacity maximum number of waiting rehashes
+     */
+    RehashOnLogin(Hasher hasher, Parameters policy, int saltLength, int workers, int queueCapacity, Publisher publisher) {
+        this.hasher = hasher;
+        this.policy = policy;
+        this.saltLength = saltLength;
+        this.publisher = publisher;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("RehashOnLogin-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    boolean isOutdated(String encodedHash) {
+        return !policy.equals(Parameters.parse(encodedHash));
+    }
+
+    /**
+     * Must be called only after {@code password} has been verified against {@code encodedHash}.
+     *
+     * @return whether a rehash was queued
+     */
+    boolean onVerified(String user, String encodedHash, byte[] password) {
+        if (!isOutdated(encodedHash)) {
+            return false;
+        }
+
+        if (!pending.add(user)) {
+            deduplicated.incrementAndGet();
+            return false;
+        }
+
+        byte[] passwordCopy = password.clone(); // the caller is free to clear its own copy after returning
+        try {
+            executor.execute(() -> rehash(user, encodedHash, passwordCopy));
+        } catch (RejectedExecutionException e) {
+            Arrays.fill(passwordCopy, (byte) 0);
+            pending.remove(user);
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        enqueued.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Computes a hash with the policy parameters, in the calling thread.
+     */
+    String hash(byte[] password) {
+        byte[] salt = new byte[saltLength];
+        random.nextBytes(salt);
+        try (ByteArray passwordByteArray = toByteArray(password).clearSource()) {
+            return hasher.salt(salt).password(passwordByteArray).encodedHash();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void rehash(String user, String encodedHash, byte[] password) {
+        try {
+            if (publisher.publish(user, encodedHash, hash(password))) {
+                upgraded.incrementAndGet();
+            } else {
+                stale.incrementAndGet(); // e.g. the user was already upgraded by a rehash that completed after the login
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+        } finally {
+            Arrays.fill(password, (byte) 0);
+            pending.remove(user);
+        }
+    }
+
+    /**
+     * The parameters of an encoded hash, i.e. <tt>$argon2id$v=19$m=65536,t=2,p=1$salt$hash</tt> (<tt>v=</tt> is
+     * missing for version 1.0). Salt and hash lengths are derived from the length of their unpadded Base64 encoding.
+     */
+    static final class Parameters {
+        final Type type;
+        final Version version;
+        final int memoryCost;
+        final int timeCost;
+        final int parallelism;
+        final int hashLength;
+
+        Parameters(Type type, Version version, int memoryCost, int timeCost, int parallelism, int hashLength) {
+            this.type = type;
+            this.version = version;
+            this.memoryCost = memoryCost;
+            this.timeCost = timeCost;
+            this.parallelism = parallelism;
+            this.hashLength = hashLength;
+        }
+
+        /**
+         * Parses without regular expressions or intermediate arrays, as it runs on every login.
+         */
+        static Parameters parse(String encodedHash) {
+            if (!encodedHash.startsWith("$")) {
+                throw new IllegalArgumentException("Not an encoded Argon2 hash");
+            }
+
+            int end = field(encodedHash, 1);
+            String typeValue = encodedHash.substring(1, end);
+            Type type = null;
+            for (Type candidate : Type.values()) {
+                if (candidate.getValue().equals(typeValue)) {
+                    type = candidate;
+                }
+            }
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown type " + typeValue);
+            }
+
+            Version version = Version.V10;
+            int start = end + 1;
+            if (encodedHash.startsWith("v=", start)) {
+                end = field(encodedHash, start);
+                int versionValue = Integer.parseInt(encodedHash.substring(start + 2, end));
+                version = null;
+                for (Version candidate : Version.values()) {
+                    if (candidate.getValue() == versionValue) {
+                        version = candidate;
+                    }
+                }
+                if (version == null) {
+                    throw new IllegalArgumentException("Unknown version " + versionValue);
+                }
+                start = end + 1;
+            }
+
+            end = field(encodedHash, start);
+            int memoryCost = -1;
+            int timeCost = -1;
+            int parallelism = -1;
+            while (start < end) {
+                int comma = encodedHash.indexOf(',', start);
+                int paramEnd = (comma < 0 || comma > end) ? end : comma;
+                if (paramEnd - start < 3 || encodedHash.charAt(start + 1) != '=') {
+                    throw new IllegalArgumentException("Malformed parameters");
+                }
+                int value = Integer.parseInt(encodedHash.substring(start + 2, paramEnd));
+                switch (encodedHash.charAt(start)) {
+                    case 'm': memoryCost = value; break;
+                    case 't': timeCost = value; break;
+                    case 'p': parallelism = value; break;
+                    default: throw new IllegalArgumentException("Unknown parameter " + encodedHash.charAt(start));
+                }
+                start = paramEnd + 1;
+            }
+            if (memoryCost < 0 || timeCost < 0 || parallelism < 0) {
+                throw new IllegalArgumentException("Missing parameters");
+            }
+
+            int salt = field(encodedHash, end + 1);
+            int hashLength = (encodedHash.length() - salt - 1) * 3 / 4;
+
+            return new Parameters(type, version, memoryCost, timeCost, parallelism, hashLength);
+        }
+
+        private static int field(String encodedHash, int start) {
+            int end = encodedHash.indexOf('$', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Not an encoded Argon2 hash");
+            }
+            return end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Parameters)) {
+                return false;
+            }
+            Parameters other = (Parameters) o;
+            return type == other.type
+                    && version == other.version
+                    && memoryCost == other.memoryCost
+                    && timeCost == other.timeCost
+                    && parallelism == other.parallelism
+                    && hashLength == other.hashLength;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, version, memoryCost, timeCost, parallelism, hashLength);
+        }
+
+        @Override
+        public String toString() {
+            return type.getValue() + " " + version.name().toLowerCase() + " m=" + memoryCost + ",t=" + timeCost + ",p=" + parallelism + " " + hashLength + " bytes";
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.spi.Jargon2Backend;
+import org.apache.commons.cli.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * Simulates a user population whose hashes were created with an older parameter policy, logging in at a steady rate
+ * while their hashes are upgraded to the current policy.
+ *
+ * <p>
+ *     Users log in uniformly at random (open loop, latency measured from the scheduled login time). With
+ *     <tt>--rehashMode async</tt>, outdated hashes are upgraded by {@link RehashOnLogin} in the background; with
+ *     <tt>inline</tt>, the new hash is computed before the login returns; with <tt>off</tt>, hashes are never upgraded,
+ *     which is the baseline. Every second it prints login latency, the rehash queue depth, upgrades, drops and the
+ *     number of users still on the old policy.
+ * </p>
+ */
+public class RehashOnLoginLoad {
+
+    enum RehashMode {
+        ASYNC, INLINE, OFF
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Class<? extends Jargon2Backend> backend = null; // discovered
+        long runtime = 300 * 1000;
+        int javaThreads = 4;
+        int users = 1000;
+        int loginRate = 50;
+        RehashMode rehashMode = RehashMode.ASYNC;
+        int rehashWorkers = 1;
+        int rehashQueue = 100;
+        int saltLength = 16;
+        int passwordLength = 32;
+        int secretLength = 16;
+        int hashLength = 16;
+        Type type = Type.ARGON2id;
+        Version version = Version.V13;
+        int oldMemoryCost = 1024;
+        int oldTimeCost = 2;
+        int memoryCost = 4 * 1024;
+        int timeCost = 2;
+        int parallelism = 1;
+
+        //<editor-fold desc="Read command-line options" defaultstate="collapsed">
+        {
+            Options options = new Options();
+
+            options.addOption(Option.builder("b").longOpt("backend").hasArg(true).argName("class").desc("Class name of the Argon2 backend (default: automatic)").build());
+            options.addOption(Option.builder("rt").longOpt("runtime").hasArg(true).argName("N").desc("Run for N seconds (default: " + (runtime / 1000) + ")").build());
+            options.addOption(Option.builder("jt").longOpt("javaThreads").hasArg(true).argName("N").desc("Number of Java threads executing logins (default: " + javaThreads + ")").build());
+            options.addOption(Option.builder("u").longOpt("users").hasArg(true).argName("N").desc("Number of users, all starting with a hash of the old policy (default: " + users + ")").build());
+            options.addOption(Option.builder("lr").longOpt("loginRate").hasArg(true).argName("N").desc("Logins per second (default: " + loginRate + ")").build());
+            options.addOption(Option.builder("rm").longOpt("rehashMode").hasArg(true).argName("async|inline|off").desc("How outdated hashes are upgraded after a login (default: " + rehashMode.name().toLowerCase() + ")").build());
+            options.addOption(Option.builder("rw").longOpt("rehashWorkers").hasArg(true).argName("N").desc("Number of background rehash threads (default: " + rehashWorkers + ")").build());
+            options.addOption(Option.builder("rq").longOpt("rehashQueue").hasArg(true).argName("N").desc("Maximum waiting rehashes, more are dropped (default: " + rehashQueue + ")").build());
+            options.addOption(Option.builder("sl").longOpt("saltLength").hasArg(true).argName("N").desc("Number of salt bytes (default: " + saltLength + ")").build());
+            options.addOption(Option.builder("pl").longOpt("passwordLength").hasArg(true).argName("N").desc("Number of password bytes (default: " + passwordLength + ")").build());
+            options.addOption(Option.builder("kl").longOpt("secretLength").hasArg(true).argName("N").desc("Number of secret bytes (default: " + secretLength + ")").build());
+            options.addOption(Option.builder("hl").longOpt("hashLength").hasArg(true).argName("N").desc("Number of output hash bytes (default: " + hashLength + ")").build());
+            options.addOption(Option.builder("t").longOpt("type").hasArg(true).argName("i|d|id").desc("Argon2 type (default: " + type.getValue().replace("argon2", "") + ")").build());
+            options.addOption(Option.builder("v").longOpt("version").hasArg(true).argName("10|13").desc("Argon2 version (default: " + version.name().replace("V", "") + ")").build());
+            options.addOption(Option.builder("omc").longOpt("oldMemoryCost").hasArg(true).argName("N").desc("Number of KB of memory of the old policy (default: " + oldMemoryCost + ")").build());
+            options.addOption(Option.builder("otc").longOpt("oldTimeCost").hasArg(true).argName("N").desc("Number of passes through memory of the old policy (default: " + oldTimeCost + ")").build());
+            options.addOption(Option.builder("mc").longOpt("memoryCost").hasArg(true).argName("N").desc("Number of KB of memory of the current policy (default: " + memoryCost + ")").build());
+            options.addOption(Option.builder("tc").longOpt("timeCost").hasArg(true).argName("N").desc("Number of passes through memory of the current policy (default: " + timeCost + ")").build());
+            options.addOption(Option.builder("p").longOpt("parallelism").hasArg(true).argName("N").desc("Number of lanes/threads used for hash calculation (default: " + parallelism + ")").build());
+            options.addOption("h", "Prints this help");
+
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse(options, args);
+
+            if (cmd.hasOption("h")) {
+                System.out.println("Simulates logins of a user population while outdated hashes are upgraded to the current policy.");
+                HelpFormatter formatter = new HelpFormatter();
+                formatter.setOptionComparator(null);
+                formatter.printHelp("java -cp path_to_jar " + RehashOnLoginLoad.class.getName() + " [options]", options);
+                System.exit(0);
+            }
+
+            if (cmd.hasOption("b")) {
+                backend = Class.forName(cmd.getOptionValue("b")).asSubclass(Jargon2Backend.class);
+            }
+
+            if (cmd.hasOption("rt")) {
+                runtime = Long.parseLong(cmd.getOptionValue("rt")) * 1000;
+            }
+
+            if (cmd.hasOption("jt")) {
+                javaThreads = Integer.parseInt(cmd.getOptionValue("jt"));
+            }
+
+            if (cmd.hasOption("u")) {
+                users = Integer.parseInt(cmd.getOptionValue("u"));
+            }
+
+            if (cmd.hasOption("lr")) {
+                loginRate = Integer.parseInt(cmd.getOptionValue("lr"));
+            }
+
+            if (cmd.hasOption("rm")) {
+                rehashMode = RehashMode.valueOf(cmd.getOptionValue("rm").toUpperCase());
+            }
+
+            if (cmd.hasOption("rw")) {
+                rehashWorkers = Integer.parseInt(cmd.getOptionValue("rw"));
+            }
+
+            if (cmd.hasOption("rq")) {
+                rehashQueue = Integer.parseInt(cmd.getOptionValue("rq"));
+            }
+
+            if (cmd.hasOption("sl")) {
+                saltLength = Integer.parseInt(cmd.getOptionValue("sl"));
+            }
+
+            if (cmd.hasOption("pl")) {
+                passwordLength = Integer.parseInt(cmd.getOptionValue("pl"));
+            }
+
+            if (cmd.hasOption("kl")) {
+                secretLength = Integer.parseInt(cmd.getOptionValue("kl"));
+            }
+
+            if (cmd.hasOption("hl")) {
+                hashLength = Integer.parseInt(cmd.getOptionValue("hl"));
+            }
+
+            if (cmd.hasOption("t")) {
+                String val = cmd.getOptionValue("t");
+                if ("i".equals(val)) {
+                    type = Type.ARGON2i;
+                } else if ("d".equals(val)) {
+                    type = Type.ARGON2d;
+                } else if (!"id".equals(val)) {
+                    throw new IllegalArgumentException("wrong type " + val);
+                }
+            }
+
+            if (cmd.hasOption("v")) {
+                String val = cmd.getOptionValue("v");
+                if ("10".equals(val)) {
+                    version = Version.V10;
+                } else if (!"13".equals(val)) {
+                    throw new IllegalArgumentException("wrong version " + val);
+                }
+            }
+
+            if (cmd.hasOption("omc")) {
+                oldMemoryCost = Integer.parseInt(cmd.getOptionValue("omc"));
+            }
+
+            if (cmd.hasOption("otc")) {
+                oldTimeCost = Integer.parseInt(cmd.getOptionValue("otc"));
+            }
+
+            if (cmd.hasOption("mc")) {
+                memoryCost = Integer.parseInt(cmd.getOptionValue("mc"));
+            }
+
+            if (cmd.hasOption("tc")) {
+                timeCost = Integer.parseInt(cmd.getOptionValue("tc"));
+            }
+
+            if (cmd.hasOption("p")) {
+                parallelism = Integer.parseInt(cmd.getOptionValue("p"));
+            }
+        }
+        //</editor-fold>
+
+        SimpleDateFormat sdf = new SimpleDateFormat("hh:mm:ss");
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Configuration");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Backend:\t\t%s\n", (backend != null ? backend.getName() : "automatic"));
+        System.out.printf("Runtime:\t\t%d seconds\n", runtime / 1000);
+        System.out.printf("Java threads:\t\t%d\n", javaThreads);
+        System.out.printf("Users:\t\t\t%d\n", users);
+        System.out.printf("Login rate:\t\t%d per second\n", loginRate);
+        System.out.printf("Rehash mode:\t\t%s\n", rehashMode.name().toLowerCase());
+        if (rehashMode == RehashMode.ASYNC) {
+            System.out.printf("Rehash workers:\t\t%d (queue of %d)\n", rehashWorkers, rehashQueue);
+        }
+        System.out.printf("Salt length:\t\t%d bytes\n", saltLength);
+        System.out.printf("Password length:\t%d bytes\n", passwordLength);
+        System.out.printf("Secret length:\t\t%d bytes\n", secretLength);
+        System.out.printf("Hash length:\t\t%d bytes\n", hashLength);
+        System.out.printf("Type:\t\t\t%s\n", type.getValueCapitalized());
+        System.out.printf("Version:\t\t%s\n", version.name().toLowerCase());
+        System.out.printf("Old policy:\t\t%d KB, %d passes\n", oldMemoryCost, oldTimeCost);
+        System.out.printf("Current policy:\t\t%d KB, %d passes\n", memoryCost, timeCost);
+        System.out.printf("Parallelism:\t\t%d lanes/threads\n", parallelism);
+        System.out.println("--------------------------------------------------");
+
+        Random r = new Random();
+
+        byte[] secret = null;
+        if (secretLength > 0) {
+            secret = new byte[secretLength];
+            r.nextBytes(secret);
+        }
+
+        Hasher baseHasher = (backend != null ? jargon2Hasher().backend(backend) : jargon2Hasher())
+                .type(type)
+                .version(version)
+                .parallelism(parallelism)
+                .hashLength(hashLength)
+                .secret(secret);
+
+        Hasher oldHasher = baseHasher.memoryCost(oldMemoryCost).timeCost(oldTimeCost);
+        Hasher hasher = baseHasher.memoryCost(memoryCost).timeCost(timeCost);
+
+        Verifier verifier = (backend != null ? jargon2Verifier().backend(backend) : jargon2Verifier())
+                .secret(secret);
+
+        Population population = new Population(users, passwordLength, saltLength, oldHasher);
+        System.out.printf("[%s] Created %d users with the old policy%n", sdf.format(new Date()), users);
+
+        RehashOnLogin.Parameters policy = new RehashOnLogin.Parameters(type, version, memoryCost, timeCost, parallelism, hashLength);
+        RehashOnLogin rehashOnLogin = new RehashOnLogin(hasher, policy, saltLength, rehashWorkers, rehashQueue, population::upgrade);
+
+        new LoginLoad(population, verifier, rehashOnLogin, rehashMode, javaThreads, loginRate).run(runtime);
+
+        rehashOnLogin.shutdown();
+    }
+
+    static class Population {
+        final String[] users;
+        final byte[][] passwords;
+        final ConcurrentHashMap<String, String> hashes = new ConcurrentHashMap<>();
+        final AtomicLong outdated;
+
+        Population(int users, int passwordLength, int saltLength, Hasher oldHasher) {
+            this.users = new String[users];
+            this.passwords = new byte[users][];
+            this.outdated = new AtomicLong(users);
+
+            IntStream.range(0, users).parallel().forEach(i -> {
+                Random r = ThreadLocalRandom.current();
+                this.users[i] = "user" + i;
+                this.passwords[i] = new byte[passwordLength];
+                r.nextBytes(this.passwords[i]);
+                byte[] salt = new byte[saltLength];
+                r.nextBytes(salt);
+                try (ByteArray password = toByteArray(this.passwords[i])) {
+                    hashes.put(this.users[i], oldHasher.salt(salt).password(password).encodedHash());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        /**
+         * Replaces the hash only if it's still the one that was verified, like a conditional update in a database.
+         */
+        boolean upgrade(String user, String oldHash, String newHash) {
+            if (hashes.replace(user, oldHash, newHash)) {
+                outdated.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static class LoginLoad {
+        private final Population population;
+        private final Verifier verifier;
+        private final RehashOnLogin rehashOnLogin;
+        private final RehashMode rehashMode;
+        private final ExecutorService executor;
+        private final long loginPeriod;
+        private final AtomicLong upgradedInline = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        private final IntervalRecorder intervalLogins = new IntervalRecorder();
+        private final LatencyHistogram logins = new LatencyHistogram();
+
+        LoginLoad(Population population, Verifier verifier, RehashOnLogin rehashOnLogin, RehashMode rehashMode, int javaThreads, int loginRate) {
+            this.population = population;
+            this.verifier = verifier;
+            this.rehashOnLogin = rehashOnLogin;
+            this.rehashMode = rehashMode;
+            this.executor = Executors.newFixedThreadPool(javaThreads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setName("RehashOnLoginLoad-login");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.loginPeriod = TimeUnit.SECONDS.toNanos(1) / loginRate;
+        }
+
+        void run(long runtime) throws InterruptedException {
+            ScheduledExecutorService generator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setName("RehashOnLoginLoad-generator");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            long start = System.currentTimeMillis();
+
+            generator.scheduleAtFixedRate(this::submitLogin, 0, loginPeriod, TimeUnit.NANOSECONDS);
+
+            System.out.println("T,LOGINS,LOGIN_P50,LOGIN_P99,LOGIN_MAX,LOGIN_FAILURES,REHASH_QUEUE,UPGRADED,UPGRADES/S,DEDUPLICATED,DROPPED,STALE,FAILED,OUTDATED_USERS");
+
+            long previousUpgraded = 0;
+            long previousTime = start;
+
+            while (System.currentTimeMillis() - start < runtime) {
+                Thread.sleep(Math.min(1000, runtime - (System.currentTimeMillis() - start)));
+                long now = System.currentTimeMillis();
+                long upgraded = upgraded();
+                LatencyHistogram interval = intervalLogins.intervalHistogram();
+                System.out.printf("%d,%d,%.2f,%.2f,%.2f,%d,%d,%d,%.1f,%d,%d,%d,%d,%d%n",
+                        now - start,
+                        interval.count(),
+                        toMillis(interval.percentile(50)),
+                        toMillis(interval.percentile(99)),
+                        toMillis(interval.max()),
+                        failures.get(),
+                        rehashOnLogin.queueDepth(),
+                        upgraded,
+                        (upgraded - previousUpgraded) * 1000.0 / Math.max(1, now - previousTime),
+                        rehashOnLogin.deduplicated.get(),
+                        rehashOnLogin.dropped.get(),
+                        rehashOnLogin.stale.get(),
+                        rehashOnLogin.failed.get(),
+                        population.outdated.get());
+                previousUpgraded = upgraded;
+                previousTime = now;
+            }
+
+            generator.shutdownNow();
+            executor.shutdownNow();
+
+            System.out.println();
+            System.out.printf("Logins: %d, p50 %.2fms, p99 %.2fms, p99.9 %.2fms, max %.2fms%n",
+                    logins.count(), toMillis(logins.percentile(50)), toMillis(logins.percentile(99)), toMillis(logins.percentile(99.9)), toMillis(logins.max()));
+            System.out.printf("Upgraded: %d, deduplicated: %d, dropped: %d, stale: %d, failed: %d. Users on the old policy: %d of %d%n",
+                    upgraded(), rehashOnLogin.deduplicated.get(), rehashOnLogin.dropped.get(), rehashOnLogin.stale.get(), rehashOnLogin.failed.get(), population.outdated.get(), population.users.length);
+            System.out.printf("Login failures: %d%n", failures.get());
+
+            if (failures.get() > 0) {
+                throw new IllegalStateException("Rehash-on-login load had " + failures.get() + " failed logins", firstFailure.get());
+            }
+        }
+
+        private long upgraded() {
+            return rehashMode == RehashMode.INLINE ? upgradedInline.get() : rehashOnLogin.upgraded.get();
+        }
+
+        private void submitLogin() {
+            long submitted = System.nanoTime();
+            int user = ThreadLocalRandom.current().nextInt(population.users.length);
+            executor.execute(() -> {
+                try {
+                    login(population.users[user], population.passwords[user]);
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet(); // a failed login is not a latency sample
+                    firstFailure.compareAndSet(null, e);
+                    return;
+                }
+                long latency = System.nanoTime() - submitted;
+                intervalLogins.record(latency);
+                logins.record(latency);
+            });
+        }
+
+        private void login(String user, byte[] password) {
+            String encodedHash = population.hashes.get(user);
+
+            boolean match;
+            try (ByteArray passwordByteArray = toByteArray(password)) {
+                match = verifier.hash(encodedHash).password(passwordByteArray).verifyEncoded();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+
+            if (!match) {
+                throw new IllegalStateException("Not matched");
+            }
+
+            switch (rehashMode) {
+                case ASYNC:
+                    rehashOnLogin.onVerified(user, encodedHash, password);
+                    break;
+                case INLINE:
+                    if (rehashOnLogin.isOutdated(encodedHash)) {
+                        if (population.upgrade(user, encodedHash, rehashOnLogin.hash(password.clone()))) {
+                            upgradedInline.incrementAndGet();
+                        }
+                    }
+                    break;
+                case OFF:
+                    break;
+            }
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / (1000 * 1000);
+        }
+    }
+}
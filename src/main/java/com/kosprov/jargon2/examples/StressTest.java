@@ -2,7 +2,6 @@ package com.kosprov.jargon2.examples;
 
 import org.apache.commons.cli.*;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.LongSummaryStatistics;
 import java.util.Random;
@@ -29,6 +28,9 @@ public class StressTest {
         int memoryCost = 4 * 1024;
         int timeCost = 2;
         int parallelism = 2;
+        int warmUpWindow = 20;
+        double warmUpCv = 0.05;
+        long warmUpMaxTime = 60 * 1000;
 
         //<editor-fold desc="Read command-line options" defaultstate="collapsed">
         {
@@ -46,6 +48,9 @@ public class StressTest {
             options.addOption(Option.builder("mc").longOpt("memoryCost").hasArg(true).argName("N").desc("Number of KB of memory used for hash calculation (default: " + memoryCost + ")").build());
             options.addOption(Option.builder("tc").longOpt("timeCost").hasArg(true).argName("N").desc("Number of passes through memory during hash calculation (default: " + timeCost + ")").build());
             options.addOption(Option.builder("p").longOpt("parallelism").hasArg(true).argName("N").desc("Number of lanes/threads used for hash calculation (default: " + parallelism + ")").build());
+            options.addOption(Option.builder("ww").longOpt("warmUpWindow").hasArg(true).argName("N").desc("Number of latest hash/verify pairs checked for steady state during warm-up (default: " + warmUpWindow + ")").build());
+            options.addOption(Option.builder("wcv").longOpt("warmUpCv").hasArg(true).argName("X").desc("Warm-up ends when the coefficient of variation of the window drops below X (default: " + warmUpCv + ")").build());
+            options.addOption(Option.builder("wmt").longOpt("warmUpMaxTime").hasArg(true).argName("N").desc("Maximum warm-up time in seconds (default: " + (warmUpMaxTime / 1000) + ")").build());
             options.addOption("h", "Prints this help");
 
             CommandLineParser parser = new DefaultParser();
@@ -123,6 +128,18 @@ public class StressTest {
             if (cmd.hasOption("p")) {
                 parallelism = Integer.parseInt(cmd.getOptionValue("p"));
             }
+
+            if (cmd.hasOption("ww")) {
+                warmUpWindow = Integer.parseInt(cmd.getOptionValue("ww"));
+            }
+
+            if (cmd.hasOption("wcv")) {
+                warmUpCv = Double.parseDouble(cmd.getOptionValue("wcv"));
+            }
+
+            if (cmd.hasOption("wmt")) {
+                warmUpMaxTime = Long.parseLong(cmd.getOptionValue("wmt")) * 1000;
+            }
         }
         //</editor-fold>
 
@@ -141,14 +158,9 @@ public class StressTest {
         System.out.printf("Memory cost:\t\t%d KB\n", memoryCost);
         System.out.printf("Time cost:\t\t%d passes\n", timeCost);
         System.out.printf("Parallelism:\t\t%d lanes/threads\n", parallelism);
+        System.out.printf("Warm-up:\t\twindow of %d, cv < %s, max %d seconds\n", warmUpWindow, warmUpCv, warmUpMaxTime / 1000);
         System.out.println("--------------------------------------------------");
 
-        warmUp(
-                rawHash,
-                jargon2Hasher().type(type).version(version).memoryCost(8).timeCost(1).parallelism(1),
-                jargon2Verifier().type(type).version(version).memoryCost(8).timeCost(1).parallelism(1)
-        );
-
         Hasher hasher = jargon2Hasher()
                 .type(type)
                 .version(version)
@@ -172,24 +184,28 @@ public class StressTest {
             verifier = verifier.secret(secret);
         }
 
+        warmUp(new WarmUp(warmUpWindow, warmUpCv, warmUpMaxTime), rawHash, adLength, saltLength, passwordLength, hasher, verifier);
+
         testHash(iterations, rawHash, adLength, saltLength, passwordLength, hasher, verifier);
     }
 
-    private static void warmUp(boolean raw, Hasher hasher, Verifier verifier) throws Exception {
+    private static void warmUp(WarmUp warmUp, boolean raw, int adLength, int saltLength, int passwordLength, Hasher hasher, Verifier verifier) throws Exception {
         System.out.println("Warming up...");
-        byte[] password = "a password value".getBytes(StandardCharsets.UTF_8);
-        byte[] salt = "a salt value".getBytes(StandardCharsets.UTF_8);
-        for (int i = 0; i < 5000; i++) {
+        WarmUp.Result result = warmUp.run(() -> {
+            byte[] ad = randomByteArray(adLength);
+            byte[] salt = randomByteArray(saltLength);
+            byte[] password = randomByteArray(passwordLength);
             boolean match;
             if (raw) {
-                match = verifier.hash(hasher.salt(salt).password(password).rawHash()).salt(salt).password(password).verifyRaw();
+                match = verifier.hash(hasher.ad(ad).salt(salt).password(password).rawHash()).ad(ad).salt(salt).password(password).verifyRaw();
             } else {
-                match = verifier.hash(hasher.password(password).encodedHash()).password(password).verifyEncoded();
+                match = verifier.hash(hasher.ad(ad).salt(salt).password(password).encodedHash()).ad(ad).password(password).verifyEncoded();
             }
             if (!match) {
                 throw new IllegalStateException("Could not verify");
             }
-        }
+        });
+        System.out.println(result);
         gc();
     }
 
@@ -0,0 +1,447 @@
+package com.kosprov.jargon2.examples;
+
+import com.kosprov.jargon2.api.Jargon2Exception;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.kosprov.jargon2.api.Jargon2.*;
+
+/**
+ * A stand-in for a real Argon2 backend, to test schedulers, admission control and metrics of the load harnesses at
+ * high concurrency on small machines.
+ *
+ * <p>
+ *     Every call takes <tt>fixedLatency + nanosPerKbPass * memoryCost * timeCost / min(lanes, threads)</tt>
+ *     nanoseconds, either burning CPU (<tt>spin</tt>) or parking the thread (<tt>sleep</tt>). Optionally, it also
+ *     allocates <tt>memoryCost</tt> KB off-heap and touches every page, as the native backend does. A fraction of the
+ *     calls (<tt>spikeProbability</tt>) takes <tt>spikeMultiplier</tt> times longer. Which calls spike depends only on
+ *     the seed and the order of calls, so runs with the same seed have the same number of spikes.
+ * </p>
+ *
+ * <p>
+ *     Batch calls ({@link BatchJargon2Backend}) take <tt>fixedLatency</tt> and allocate memory once per batch, plus the
+ *     per-KB time of every input, which is what a backend that really batches would save.
+ * </p>
+ *
+ * <p>
+ *     Hashes are SHA-256 based (not Argon2!) but deterministic, they depend on all parameters and inputs, and encoded
+ *     hashes have the PHC format of real ones (<tt>$argon2id$v=19$m=..,t=..,p=..$salt$hash</tt>, unpadded Base64), so
+ *     they verify and can be parsed like real ones.
+ * </p>
+ *
+ * <p>
+ *     Backends are instantiated by class name (<tt>--backend com.kosprov.jargon2.examples.SyntheticBackend</tt>), so
+ *     the no-arg constructor reads its configuration from system properties:
+ * </p>
+ * <pre>
+ * -Djargon2.synthetic.fixedLatency=20000       nanoseconds per call
+ * -Djargon2.synthetic.nanosPerKbPass=1000      nanoseconds per KB of memory cost and pass
+ * -Djargon2.synthetic.mode=spin                spin|sleep
+ * -Djargon2.synthetic.allocate=false           allocate memoryCost KB off-heap per call
+ * -Djargon2.synthetic.spikeProbability=0.001
+ * -Djargon2.synthetic.spikeMultiplier=10
+ * -Djargon2.synthetic.seed=0
+ * </pre>
+ */
+public class SyntheticBackend implements BatchJargon2Backend {
+
+    private static final String PREFIX = "jargon2.synthetic.";
+    private static final int PAGE_SIZE = 4096;
+
+    private final long fixedLatency;
+    private final double nanosPerKbPass;
+    private final boolean spin;
+    private final boolean allocate;
+    private final double spikeProbability;
+    private final double spikeMultiplier;
+    private final long seed;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong spikes = new AtomicLong();
+
+    @SuppressWarnings("unused")
+    public SyntheticBackend() {
+        this(Long.getLong(PREFIX + "fixedLatency", 20 * 1000),
+                Double.parseDouble(System.getProperty(PREFIX + "nanosPerKbPass", "1000")),
+                parseMode(System.getProperty(PREFIX + "mode", "spin")),
+                Boolean.getBoolean(PREFIX + "allocate"),
+                Double.parseDouble(System.getProperty(PREFIX + "spikeProbability", "0.001")),
+                Double.parseDouble(System.getProperty(PREFIX + "spikeMultiplier", "10")),
+                Long.getLong(PREFIX + "seed", 0));
+    }
+
+    /**
+     * @param fixedLatency nanoseconds added to every call
+     * @param nanosPerKbPass nanoseconds per KB of memory cost and pass (divided by the effective parallelism)
+     * @param spin whether to burn CPU while waiting, or park the thread
+     * @param allocate whether to allocate (and touch) memoryCost KB off-heap on every call
+     * @param spikeProbability fraction of the calls that take longer
+     * @param spikeMultiplier how much longer a spike takes
+     * @param seed decides which calls spike
+     */
+    public SyntheticBackend(long fixedLatency, double nanosPerKbPass, boolean spin, boolean allocate, double spikeProbability, double spikeMultiplier, long seed) {
+        this.fixedLatency = fixedLatency;
+        this.nanosPerKbPass = nanosPerKbPass;
+        this.spin = spin;
+        this.allocate = allocate;
+        this.spikeProbability = spikeProbability;
+        this.spikeMultiplier = spikeMultiplier;
+        this.seed = seed;
+    }
+
+    long calls() {
+        return calls.get();
+    }
+
+    long spikes() {
+        return spikes.get();
+    }
+
+    @Override
+    public byte[] rawHash(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+        int effectiveThreads = effectiveThreads(lanes, threads);
+        validate(memoryCost, timeCost, lanes, effectiveThreads, hashLength, salt, password);
+        simulate(work(memoryCost, timeCost, lanes, effectiveThreads), memoryCost);
+        return digest(type, version, memoryCost, timeCost, lanes, hashLength, secret, ad, salt, password);
+    }
+
+    @Override
+    public String encodedHash(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+        byte[] hash = rawHash(type, version, memoryCost, timeCost, lanes, threads, hashLength, secret, ad, salt, password, options);
+        return encode(type, version, memoryCost, timeCost, lanes, salt, hash);
+    }
+
+    @Override
+    public boolean verifyRaw(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, byte[] rawHash, byte[] secret, byte[] ad, byte[] salt, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+        byte[] expected = rawHash(type, version, memoryCost, timeCost, lanes, threads, rawHash.length, secret, ad, salt, password, options);
+        return MessageDigest.isEqual(expected, rawHash);
+    }
+
+    @Override
+    public boolean verifyEncoded(String encodedHash, int threads, byte[] secret, byte[] ad, byte[] password, Map<String, Object> options) throws Jargon2Exception {
+        EncodedHash decoded;
+        try {
+            decoded = EncodedHash.parse(encodedHash);
+        } catch (IllegalArgumentException e) {
+            throw new Jargon2Exception("Invalid encoded hash: " + e.getMessage());
+        }
+        return verifyRaw(decoded.type, decoded.version, decoded.memoryCost, decoded.timeCost, decoded.lanes, threads, decoded.hash, secret, ad, decoded.salt, password, options);
+    }
+
+    @Override
+    public String[] encodedHashBatch(Type type, Version version, int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] secret, byte[][] ads, byte[][] salts, byte[][] passwords, Map<String, Object> options) throws Jargon2Exception {
+        BatchJargon2Backend.checkBatch(salts.length, ads, passwords);
+        int effectiveThreads = effectiveThreads(lanes, threads);
+        for (int i = 0; i < salts.length; i++) {
+            validate(memoryCost, timeCost, lanes, effectiveThreads, hashLength, salts[i], passwords[i]);
+        }
+
+        simulate(salts.length * work(memoryCost, timeCost, lanes, effectiveThreads), memoryCost);
+
+        String[] hashes = new String[salts.length];
+        for (int i = 0; i < hashes.length; i++) {
+            byte[] hash = digest(type, version, memoryCost, timeCost, lanes, hashLength, secret, (ads != null ? ads[i] : null), salts[i], passwords[i]);
+            hashes[i] = encode(type, version, memoryCost, timeCost, lanes, salts[i], hash);
+        }
+        return hashes;
+    }
+
+    @Override
+    public boolean[] verifyEncodedBatch(String[] encodedHashes, int threads, byte[] secret, byte[][] ads, byte[][] passwords, Map<String, Object> options) throws Jargon2Exception {
+        BatchJargon2Backend.checkBatch(encodedHashes.length, ads, passwords);
+        EncodedHash[] decoded = new EncodedHash[encodedHashes.length];
+        double work = 0;
+        int maxMemoryCost = 0;
+        for (int i = 0; i < decoded.length; i++) {
+            try {
+                decoded[i] = EncodedHash.parse(encodedHashes[i]);
+            } catch (IllegalArgumentException e) {
+                throw new Jargon2Exception("Invalid encoded hash: " + e.getMessage());
+            }
+            int effectiveThreads = effectiveThreads(decoded[i].lanes, threads);
+            validate(decoded[i].memoryCost, decoded[i].timeCost, decoded[i].lanes, effectiveThreads, decoded[i].hash.length, decoded[i].salt, passwords[i]);
+            work += work(decoded[i].memoryCost, decoded[i].timeCost, decoded[i].lanes, effectiveThreads);
+            maxMemoryCost = Math.max(maxMemoryCost, decoded[i].memoryCost);
+        }
+
+        simulate(work, maxMemoryCost);
+
+        boolean[] matches = new boolean[decoded.length];
+        for (int i = 0; i < matches.length; i++) {
+            EncodedHash hash = decoded[i];
+            byte[] expected = digest(hash.type, hash.version, hash.memoryCost, hash.timeCost, hash.lanes, hash.hash.length, secret, (ads != null ? ads[i] : null), hash.salt, passwords[i]);
+            matches[i] = MessageDigest.isEqual(expected, hash.hash);
+        }
+        return matches;
+    }
+
+    /**
+     * The default verifier passes -1 threads, i.e. one per lane.
+     */
+    private static int effectiveThreads(int lanes, int threads) {
+        return (threads > 0 ? threads : lanes);
+    }
+
+    private static String encode(Type type, Version version, int memoryCost, int timeCost, int lanes, byte[] salt, byte[] hash) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return "$" + type.getValue() +
+                "$v=" + version.getValue() +
+                "$m=" + memoryCost + ",t=" + timeCost + ",p=" + lanes +
+                "$" + encoder.encodeToString(salt) +
+                "$" + encoder.encodeToString(hash);
+    }
+
+    private static boolean parseMode(String mode) {
+        if ("spin".equals(mode)) {
+            return true;
+        } else if ("sleep".equals(mode)) {
+            return false;
+        }
+        throw new IllegalArgumentException("wrong mode " + mode);
+    }
+
+    private static void validate(int memoryCost, int timeCost, int lanes, int threads, int hashLength, byte[] salt, byte[] password) {
+        if (lanes < 1 || threads < 1) {
+            throw new Jargon2Exception("Lanes and threads must be at least 1");
+        }
+        if (memoryCost < 8 * lanes) {
+            throw new Jargon2Exception("Memory cost must be at least 8 KB per lane");
+        }
+        if (timeCost < 1) {
+            throw new Jargon2Exception("Time cost must be at least 1");
+        }
+        if (hashLength < 4) {
+            throw new Jargon2Exception("Hash length must be at least 4 bytes");
+        }
+        if (salt == null || salt.length < 8) {
+            throw new Jargon2Exception("Salt must be at least 8 bytes");
+        }
+        if (password == null) {
+            throw new Jargon2Exception("Password is required");
+        }
+    }
+
+    private double work(int memoryCost, int timeCost, int lanes, int threads) {
+        return nanosPerKbPass * memoryCost * timeCost / Math.min(lanes, threads);
+    }
+
+    /**
+     * One call: {@code fixedLatency} plus {@code work} nanoseconds, with {@code memoryCost} KB allocated if enabled.
+     */
+    private void simulate(double work, int memoryCost) {
+        long start = System.nanoTime();
+
+        double nanos = fixedLatency + work;
+        if (spikeProbability > 0 && isSpike(calls.getAndIncrement())) {
+            spikes.incrementAndGet();
+            nanos *= spikeMultiplier;
+        }
+        long deadline = start + (long) nanos;
+
+        long address = 0;
+        if (allocate) {
+            address = OffHeap.allocate((long) memoryCost * 1024);
+        }
+        try {
+            if (spin) {
+                while (System.nanoTime() < deadline) {
+                    // burn CPU, like the Argon2 passes
+                }
+            } else {
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+        } finally {
+            if (allocate) {
+                OffHeap.free(address);
+            }
+        }
+    }
+
+    /**
+     * SplitMix64 of the seed and the call number, as a fraction in [0, 1).
+     */
+    private boolean isSpike(long call) {
+        long z = seed + (call + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53 < spikeProbability;
+    }
+
+    /**
+     * SHA-256 of all parameters and inputs, extended to {@code hashLength} bytes with SHA-256(counter || previous).
+     */
+    private static byte[] digest(Type type, Version version, int memoryCost, int timeCost, int lanes, int hashLength, byte[] secret, byte[] ad, byte[] salt, byte[] password) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        sha256.update(type.getValue().getBytes(StandardCharsets.US_ASCII));
+        sha256.update(ByteBuffer.allocate(20).putInt(version.getValue()).putInt(memoryCost).putInt(timeCost).putInt(lanes).putInt(hashLength).array());
+        for (byte[] input : new byte[][] { secret, ad, salt, password }) {
+            int length = (input != null ? input.length : 0);
+            sha256.update(ByteBuffer.allocate(4).putInt(length).array());
+            if (length > 0) {
+                sha256.update(input);
+            }
+        }
+        byte[] block = sha256.digest();
+
+        byte[] hash = new byte[hashLength];
+        int filled = 0;
+        for (int counter = 1; ; counter++) {
+            int length = Math.min(block.length, hashLength - filled);
+            System.arraycopy(block, 0, hash, filled, length);
+            filled += length;
+            if (filled == hashLength) {
+                return hash;
+            }
+            sha256.update(ByteBuffer.allocate(4).putInt(counter).array());
+            block = sha256.digest(block);
+        }
+    }
+
+    /**
+     * The fields of a hash in the format written by {@link #encodedHash}. The <tt>v=</tt> field is optional, as in
+     * version 1.0 hashes of real backends.
+     */
+    private static final class EncodedHash {
+        final Type type;
+        final Version version;
+        final int memoryCost;
+        final int timeCost;
+        final int lanes;
+        final byte[] salt;
+        final byte[] hash;
+
+        private EncodedHash(Type type, Version version, int memoryCost, int timeCost, int lanes, byte[] salt, byte[] hash) {
+            this.type = type;
+            this.version = version;
+            this.memoryCost = memoryCost;
+            this.timeCost = timeCost;
+            this.lanes = lanes;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        static EncodedHash parse(String encodedHash) {
+            String[] fields = encodedHash.split("\\$", -1);
+            if (fields.length < 5 || fields.length > 6 || !fields[0].isEmpty()) {
+                throw new IllegalArgumentException("not an encoded Argon2 hash");
+            }
+
+            Type type = null;
+            for (Type candidate : Type.values()) {
+                if (candidate.getValue().equals(fields[1])) {
+                    type = candidate;
+                }
+            }
+            if (type == null) {
+                throw new IllegalArgumentException("unknown type " + fields[1]);
+            }
+
+            int next = 2;
+            Version version = Version.V10;
+            if (fields.length == 6) {
+                if (!fields[next].startsWith("v=")) {
+                    throw new IllegalArgumentException("malformed version " + fields[next]);
+                }
+                int versionValue = Integer.parseInt(fields[next++].substring(2));
+                version = null;
+                for (Version candidate : Version.values()) {
+                    if (candidate.getValue() == versionValue) {
+                        version = candidate;
+                    }
+                }
+                if (version == null) {
+                    throw new IllegalArgumentException("unknown version " + versionValue);
+                }
+            }
+
+            int memoryCost = -1;
+            int timeCost = -1;
+            int lanes = -1;
+            for (String parameter : fields[next++].split(",")) {
+                if (parameter.length() < 3 || parameter.charAt(1) != '=') {
+                    throw new IllegalArgumentException("malformed parameter " + parameter);
+                }
+                int value = Integer.parseInt(parameter.substring(2));
+                switch (parameter.charAt(0)) {
+                    case 'm': memoryCost = value; break;
+                    case 't': timeCost = value; break;
+                    case 'p': lanes = value; break;
+                    default: throw new IllegalArgumentException("unknown parameter " + parameter);
+                }
+            }
+            if (memoryCost < 0 || timeCost < 0 || lanes < 0) {
+                throw new IllegalArgumentException("missing parameters");
+            }
+
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] salt = decoder.decode(fields[next++]);
+            byte[] hash = decoder.decode(fields[next]);
+
+            return new EncodedHash(type, version, memoryCost, timeCost, lanes, salt, hash);
+        }
+    }
+
+    /**
+     * malloc/free through <tt>sun.misc.Unsafe</tt> (looked up reflectively), which is what a native backend does on
+     * every call. Direct byte buffers would only be freed on GC.
+     */
+    private static final class OffHeap {
+        private static final MethodHandle ALLOCATE_MEMORY;
+        private static final MethodHandle PUT_BYTE;
+        private static final MethodHandle FREE_MEMORY;
+
+        static {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                Object unsafe = field.get(null);
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                ALLOCATE_MEMORY = lookup.unreflect(unsafeClass.getMethod("allocateMemory", long.class)).bindTo(unsafe);
+                PUT_BYTE = lookup.unreflect(unsafeClass.getMethod("putByte", long.class, byte.class)).bindTo(unsafe);
+                FREE_MEMORY = lookup.unreflect(unsafeClass.getMethod("freeMemory", long.class)).bindTo(unsafe);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        static long allocate(long bytes) {
+            try {
+                long address = (long) ALLOCATE_MEMORY.invokeExact(bytes);
+                for (long offset = 0; offset < bytes; offset += PAGE_SIZE) {
+                    PUT_BYTE.invokeExact(address + offset, (byte) 1); // commit the page, so it counts in RSS
+                }
+                return address;
+            } catch (Throwable e) {
+                throw new Jargon2Exception("Could not allocate " + bytes + " bytes: " + e);
+            }
+        }
+
+        static void free(long address) {
+            try {
+                FREE_MEMORY.invokeExact(address);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
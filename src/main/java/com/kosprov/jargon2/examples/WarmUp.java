@@ -0,0 +1,169 @@
+package com.kosprov.jargon2.examples;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Repeats an operation until its latency reaches a steady state.
+ *
+ * <p>
+ *     Latency is tracked over a sliding window of the last N operations. Warm-up stops when the coefficient of variation
+ *     (standard deviation / mean) of the window drops below a threshold, or when the maximum warm-up time is reached,
+ *     whichever comes first. The operation should be the one that is going to be measured (same parameters), so that
+ *     the JIT compiles the actual code path.
+ * </p>
+ */
+class WarmUp {
+
+    @FunctionalInterface
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    private final int window;
+    private final double cvThreshold;
+    private final long maxTime;
+
+    /**
+     * @param window number of latest operations in the sliding window
+     * @param cvThreshold coefficient of variation below which latency is considered steady
+     * @param maxTime maximum warm-up time in milliseconds
+     */
+    WarmUp(int window, double cvThreshold, long maxTime) {
+        if (window < 2) {
+            throw new IllegalArgumentException("Warm-up window must be at least 2");
+        }
+        this.window = window;
+        this.cvThreshold = cvThreshold;
+        this.maxTime = maxTime;
+    }
+
+    Result run(Operation operation) throws Exception {
+        long compilationsBefore = compilations();
+        long compilationTimeBefore = compilationTime();
+
+        long[] latencies = new long[window];
+        long iterations = 0;
+        double mean = 0;
+        double cv = Double.NaN;
+        boolean steady = false;
+
+        long start = System.nanoTime();
+        long deadline = start + maxTime * 1000 * 1000;
+
+        while (true) {
+            long opStart = System.nanoTime();
+            operation.run();
+            long opEnd = System.nanoTime();
+
+            latencies[(int) (iterations % window)] = opEnd - opStart;
+            iterations++;
+
+            if (iterations >= window) {
+                double sum = 0;
+                for (long latency : latencies) {
+                    sum += latency;
+                }
+                mean = sum / window;
+
+                double squares = 0;
+                for (long latency : latencies) {
+                    squares += (latency - mean) * (latency - mean);
+                }
+                cv = mean > 0 ? Math.sqrt(squares / (window - 1)) / mean : 0;
+
+                if (cv < cvThreshold) {
+                    steady = true;
+                    break;
+                }
+            }
+
+            if (opEnd >= deadline) {
+                break;
+            }
+        }
+
+        long elapsed = (System.nanoTime() - start) / (1000 * 1000);
+
+        long compilationsAfter = compilations();
+        long compilationTimeAfter = compilationTime();
+
+        return new Result(
+                iterations,
+                elapsed,
+                steady,
+                mean,
+                cv,
+                (compilationsBefore >= 0 && compilationsAfter >= 0 ? compilationsAfter - compilationsBefore : -1),
+                (compilationTimeBefore >= 0 && compilationTimeAfter >= 0 ? compilationTimeAfter - compilationTimeBefore : -1)
+        );
+    }
+
+    /**
+     * Number of JIT compilations so far, as reported by <tt>jstat -compiler</tt> (-1 if not available).
+     */
+    private static long compilations() {
+        try {
+            Process jstat = Runtime.getRuntime().exec(new String[] { "jstat", "-compiler", MultiThreadedHashVerifyLoop.getProcessId() });
+            jstat.waitFor();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(jstat.getInputStream()))) {
+                reader.readLine(); // header
+                String values = reader.readLine();
+                if (values == null) {
+                    return -1;
+                }
+                return Long.parseLong(values.trim().split(" +")[0]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Accumulated JIT compilation time in milliseconds (-1 if not available).
+     */
+    private static long compilationTime() {
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        if (compilation == null || !compilation.isCompilationTimeMonitoringSupported()) {
+            return -1;
+        }
+        return compilation.getTotalCompilationTime();
+    }
+
+    static class Result {
+        final long iterations;
+        final long elapsed;
+        final boolean steady;
+        final double mean;
+        final double cv;
+        final long compilations;
+        final long compilationTime;
+
+        Result(long iterations, long elapsed, boolean steady, double mean, double cv, long compilations, long compilationTime) {
+            this.iterations = iterations;
+            this.elapsed = elapsed;
+            this.steady = steady;
+            this.mean = mean;
+            this.cv = cv;
+            this.compilations = compilations;
+            this.compilationTime = compilationTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s after %d iterations in %dms (window avg: %.2fms, cv: %.3f, JIT compilations: %s, JIT time: %s)",
+                    (steady ? "Steady" : "Not steady (time limit)"),
+                    iterations,
+                    elapsed,
+                    mean / (1000 * 1000),
+                    cv,
+                    (compilations >= 0 ? String.valueOf(compilations) : "n/a"),
+                    (compilationTime >= 0 ? compilationTime + "ms" : "n/a"));
+        }
+    }
+}